@@ -0,0 +1,47 @@
+package com.jcrpo.fieldcontrol.benchmark;
+
+import com.jcrpo.fieldcontrol.security.AppUserPrincipal;
+import com.jcrpo.fieldcontrol.security.PrincipalCache;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/** Проверка пароля на каждом запросе: BCrypt против попадания в PrincipalCache. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthBenchmark {
+
+    private static final String USERNAME = "bench-user";
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"10", "12"})
+    int bcryptStrength;
+
+    private BCryptPasswordEncoder encoder;
+    private String hash;
+    private PrincipalCache principalCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        encoder = new BCryptPasswordEncoder(bcryptStrength);
+        hash = encoder.encode(PASSWORD);
+        principalCache = new PrincipalCache(Duration.ofHours(1), 10_000);
+        principalCache.store(new AppUserPrincipal(1L, USERNAME, hash), PASSWORD);
+    }
+
+    @Benchmark
+    public boolean bcryptMatches() {
+        return encoder.matches(PASSWORD, hash);
+    }
+
+    @Benchmark
+    public AppUserPrincipal cachedPrincipal() {
+        return principalCache.lookup(USERNAME, PASSWORD);
+    }
+}
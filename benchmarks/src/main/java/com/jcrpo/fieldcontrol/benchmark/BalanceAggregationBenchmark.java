@@ -0,0 +1,47 @@
+package com.jcrpo.fieldcontrol.benchmark;
+
+import com.jcrpo.fieldcontrol.dto.TransactionView;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подсчёт "накоплено" для дашборда свёрткой всего списка операций (как делал App.js).
+ * Путь, который его заменил, — чтение строки user_balance — меряет
+ * RepositoryReadBenchmark.balanceLookup: вместе с запросом, а не только геттерами сущности.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BalanceAggregationBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int transactions;
+
+    private List<TransactionView> history;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        history = Fixtures.transactions(transactions);
+    }
+
+    @Benchmark
+    public long streamReduce() {
+        return history.stream()
+                .mapToLong(t -> "INCOME".equals(t.type()) ? t.amountMinor() : -t.amountMinor())
+                .sum();
+    }
+
+    @Benchmark
+    public long loop() {
+        long net = 0;
+        for (TransactionView t : history) {
+            net += "INCOME".equals(t.type()) ? t.amountMinor() : -t.amountMinor();
+        }
+        return net;
+    }
+}
@@ -0,0 +1,53 @@
+package com.jcrpo.fieldcontrol.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jcrpo.fieldcontrol.dto.GoalView;
+import com.jcrpo.fieldcontrol.dto.TransactionView;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/** Детерминированные тестовые данные, похожие на реальную историю пользователя. */
+final class Fixtures {
+
+    static final String[] CATEGORIES = {"food", "transport", "entertainment", "health", "other"};
+
+    private Fixtures() {
+    }
+
+    static GoalView goal() {
+        return new GoalView(1L, "Отпуск", 500_000L, LocalDate.of(2030, 1, 1), "BYN");
+    }
+
+    static List<TransactionView> transactions(int count) {
+        SplittableRandom random = new SplittableRandom(42);
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 9, 0);
+        List<TransactionView> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean income = random.nextInt(4) == 0;
+            LocalDateTime ts = start.plusMinutes(i * 17L);
+            list.add(new TransactionView(
+                    (long) i + 1,
+                    random.nextLong(100, 50_000),
+                    "BYN",
+                    income ? "income" : CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    income ? "Зарплата" : "Покупка #" + i,
+                    income ? "INCOME" : "EXPENSE",
+                    ts.toLocalDate(),
+                    ts));
+        }
+        return list;
+    }
+
+    /** ObjectMapper с теми же настройками дат, что и у Spring Boot по умолчанию. */
+    static ObjectMapper objectMapper() {
+        return new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+}
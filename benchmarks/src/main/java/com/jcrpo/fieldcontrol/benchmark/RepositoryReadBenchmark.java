@@ -0,0 +1,118 @@
+package com.jcrpo.fieldcontrol.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение истории во встраиваемой H2 (режим PostgreSQL) как замена настоящей БД:
+ * полная выборка пользователя (прежний findByUser) против keyset-страницы по индексу
+ * (user_id, timestamp, id) и чтения строки user_balance. Запросы повторяют SQL,
+ * который генерирует Hibernate для соответствующих методов репозиториев.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryReadBenchmark {
+
+    private static final long USER_ID = 1;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"1000", "100000"})
+    int transactions;
+
+    private Connection connection;
+    private PreparedStatement fullLoad;
+    private PreparedStatement keysetPage;
+    private PreparedStatement balanceRow;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("drop all objects");
+            ddl.execute("create table transaction (id bigint primary key, amount_minor bigint, currency varchar(3), " +
+                    "category varchar(255), description varchar(255), type varchar(255), date date, timestamp timestamp, user_id bigint)");
+            ddl.execute("create index idx_transaction_user_timestamp on transaction (user_id, timestamp, id)");
+            ddl.execute("create table user_balance (user_id bigint primary key, income_minor bigint, " +
+                    "expense_minor bigint, transaction_count bigint)");
+        }
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 9, 0);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into transaction values (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < transactions; i++) {
+                LocalDateTime ts = start.plusMinutes(i * 17L);
+                insert.setLong(1, i + 1);
+                insert.setLong(2, 1000 + i % 100 * 100L);
+                insert.setString(3, "BYN");
+                insert.setString(4, Fixtures.CATEGORIES[i % Fixtures.CATEGORIES.length]);
+                insert.setString(5, "Покупка #" + i);
+                insert.setString(6, i % 4 == 0 ? "INCOME" : "EXPENSE");
+                insert.setObject(7, ts.toLocalDate());
+                insert.setTimestamp(8, Timestamp.valueOf(ts));
+                insert.setLong(9, USER_ID);
+                insert.addBatch();
+                if (i % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        try (Statement balance = connection.createStatement()) {
+            balance.execute("insert into user_balance values (1, 100000, 50000, " + transactions + ")");
+        }
+        fullLoad = connection.prepareStatement(
+                "select id, amount_minor, currency, category, description, type, date, timestamp, user_id " +
+                        "from transaction where user_id = ?");
+        keysetPage = connection.prepareStatement(
+                "select id, amount_minor, currency, category, description, type, date, timestamp from transaction " +
+                        "where user_id = ? order by timestamp desc, id desc limit ?");
+        balanceRow = connection.prepareStatement(
+                "select income_minor, expense_minor, transaction_count from user_balance where user_id = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public long fullHistoryLoad() throws SQLException {
+        fullLoad.setLong(1, USER_ID);
+        return drain(fullLoad);
+    }
+
+    @Benchmark
+    public long keysetFirstPage() throws SQLException {
+        keysetPage.setLong(1, USER_ID);
+        keysetPage.setInt(2, PAGE_SIZE);
+        return drain(keysetPage);
+    }
+
+    @Benchmark
+    public long balanceLookup() throws SQLException {
+        balanceRow.setLong(1, USER_ID);
+        return drain(balanceRow);
+    }
+
+    private static long drain(PreparedStatement statement) throws SQLException {
+        long checksum = 0;
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                checksum += rs.getLong(1);
+            }
+        }
+        return checksum;
+    }
+}
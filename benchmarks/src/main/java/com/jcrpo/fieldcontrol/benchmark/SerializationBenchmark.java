@@ -0,0 +1,82 @@
+package com.jcrpo.fieldcontrol.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jcrpo.fieldcontrol.dto.GoalView;
+import com.jcrpo.fieldcontrol.dto.TransactionView;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация ответа GET /api/data: прежний способ (Map с полным списком в writeValue)
+ * против потоковой записи массива через JsonGenerator, как в DataController.getUserData.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int transactions;
+
+    private ObjectMapper mapper;
+    private GoalView goal;
+    private List<TransactionView> history;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mapper = Fixtures.objectMapper();
+        goal = Fixtures.goal();
+        history = Fixtures.transactions(transactions);
+    }
+
+    @Benchmark
+    public long mapPayload() throws IOException {
+        Map<String, Object> userData = new HashMap<>();
+        userData.put("goal", goal);
+        userData.put("transactions", history);
+        CountingOutputStream out = new CountingOutputStream();
+        mapper.writeValue(out, userData);
+        return out.count;
+    }
+
+    @Benchmark
+    public long streamedPayload() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (JsonGenerator json = mapper.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeObjectField("goal", goal);
+            json.writeArrayFieldStart("transactions");
+            for (TransactionView t : history) {
+                json.writeObject(t);
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        return out.count;
+    }
+
+    /** Отбрасывает байты, считая только их количество (сеть вне замера). */
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
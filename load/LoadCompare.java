@@ -0,0 +1,109 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Нагрузочный прогон для сравнения режимов thread-per-request и virtual.
+ * Держит заданное число одновременных запросов в течение duration и печатает
+ * пропускную способность, перцентили задержки и распределение статусов.
+ *
+ * java load/LoadCompare.java http://localhost:8080 user:password 200 PT60S /api/data/summary /api/currency
+ */
+public class LoadCompare {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.err.println("usage: LoadCompare <baseUrl> <user:password> <concurrency> <duration> <path>...");
+            System.exit(2);
+        }
+        String baseUrl = args[0];
+        String auth = "Basic " + Base64.getEncoder().encodeToString(args[1].getBytes(StandardCharsets.UTF_8));
+        int concurrency = Integer.parseInt(args[2]);
+        Duration duration = Duration.parse(args[3]);
+        List<URI> targets = new ArrayList<>();
+        for (String path : Arrays.copyOfRange(args, 4, args.length)) {
+            targets.add(URI.create(baseUrl + path));
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        Semaphore inFlight = new Semaphore(concurrency);
+        ConcurrentLinkedQueue<long[]> samples = new ConcurrentLinkedQueue<>();
+
+        // Прогрев: JIT, пул соединений, кэш учётных данных
+        warmUp(client, auth, targets);
+
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        int next = 0;
+        while (System.nanoTime() < deadline) {
+            inFlight.acquire();
+            URI target = targets.get(next++ % targets.size());
+            long sent = System.nanoTime();
+            HttpRequest request = HttpRequest.newBuilder(target)
+                    .header("Authorization", auth)
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        int status = error != null ? -1 : response.statusCode();
+                        samples.add(new long[]{System.nanoTime() - sent, status});
+                        inFlight.release();
+                        return null;
+                    });
+        }
+        inFlight.acquire(concurrency);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        report(samples, elapsedSeconds, concurrency);
+    }
+
+    private static void warmUp(HttpClient client, String auth, List<URI> targets) {
+        List<CompletableFuture<?>> warmups = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            HttpRequest request = HttpRequest.newBuilder(targets.get(i % targets.size()))
+                    .header("Authorization", auth)
+                    .build();
+            warmups.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        warmups.forEach(f -> f.exceptionally(e -> null).join());
+    }
+
+    private static void report(ConcurrentLinkedQueue<long[]> samples, double elapsedSeconds, int concurrency) {
+        long[] latencies = samples.stream().mapToLong(s -> s[0]).sorted().toArray();
+        Map<Long, Integer> statuses = new TreeMap<>();
+        samples.forEach(s -> statuses.merge(s[1], 1, Integer::sum));
+        System.out.printf("concurrency   %d%n", concurrency);
+        System.out.printf("requests      %d in %.1f s%n", latencies.length, elapsedSeconds);
+        System.out.printf("throughput    %.1f req/s%n", latencies.length / elapsedSeconds);
+        for (double p : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            System.out.printf("p%-12s %.1f ms%n", trim(p * 100), percentile(latencies, p) / 1e6);
+        }
+        System.out.printf("max           %.1f ms%n", latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+        System.out.println("statuses      " + statuses + "  (-1 = client error/timeout)");
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static String trim(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+}
@@ -0,0 +1,103 @@
+package com.jcrpo.fieldcontrol.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Spring-кэш поверх Caffeine (размер и время жизни записи). Отсутствие значения тоже кэшируется, поэтому
+ * после создания записи её ключ нужно сбрасывать. Сброс внутри транзакции повторяется
+ * после коммита: параллельное чтение могло успеть положить в кэш старое значение.
+ */
+public class BoundedCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final Cache<Object, Object> store;
+
+    public BoundedCache(String name, Duration ttl, int maxSize) {
+        super(true);
+        this.name = name;
+        this.store = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return store;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        return store.getIfPresent(key);
+    }
+
+    /** Одновременные промахи по одному ключу ждут одной загрузки; другие ключи не блокируются. */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return (T) fromStoreValue(store.get(key, k -> {
+            try {
+                return toStoreValue(valueLoader.call());
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        }));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        store.put(key, toStoreValue(value));
+    }
+
+    @Override
+    public void evict(Object key) {
+        store.invalidate(key);
+        afterCommit(() -> store.invalidate(key));
+    }
+
+    @Override
+    public void clear() {
+        store.invalidateAll();
+        afterCommit(store::invalidateAll);
+    }
+
+    public long hitCount() {
+        return store.stats().hitCount();
+    }
+
+    public long missCount() {
+        return store.stats().missCount();
+    }
+
+    public long evictionCount() {
+        return store.stats().evictionCount();
+    }
+
+    public long size() {
+        return store.estimatedSize();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+}
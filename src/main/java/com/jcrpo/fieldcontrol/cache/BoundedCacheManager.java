@@ -0,0 +1,55 @@
+package com.jcrpo.fieldcontrol.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Фиксированный набор кэшей, заданный при старте: опечатка в имени кэша в аннотации
+ * приводит к ошибке, а не к молчаливому созданию неограниченного кэша.
+ * Попадания, промахи, вытеснения и размер каждого кэша выгружаются в метрики.
+ */
+public class BoundedCacheManager implements CacheManager {
+
+    private final Map<String, BoundedCache> caches = new LinkedHashMap<>();
+
+    public BoundedCacheManager(Collection<BoundedCache> caches, MeterRegistry meterRegistry) {
+        for (BoundedCache cache : caches) {
+            this.caches.put(cache.getName(), cache);
+            // Имена и метки — как у кэшей, которые Spring Boot регистрирует сам
+            FunctionCounter.builder("cache.gets", cache, BoundedCache::hitCount)
+                    .description("Cache lookups").tags("cache", cache.getName(), "result", "hit")
+                    .register(meterRegistry);
+            FunctionCounter.builder("cache.gets", cache, BoundedCache::missCount)
+                    .description("Cache lookups").tags("cache", cache.getName(), "result", "miss")
+                    .register(meterRegistry);
+            FunctionCounter.builder("cache.evictions", cache, BoundedCache::evictionCount)
+                    .description("Entries evicted by size or expiry").tag("cache", cache.getName())
+                    .register(meterRegistry);
+            Gauge.builder("cache.size", cache, BoundedCache::size)
+                    .description("Entries currently cached").tag("cache", cache.getName())
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache == null) {
+            throw new IllegalArgumentException("Unknown cache '" + name + "'");
+        }
+        return cache;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+}
@@ -0,0 +1,41 @@
+package com.jcrpo.fieldcontrol.config;
+
+import com.jcrpo.fieldcontrol.cache.BoundedCache;
+import com.jcrpo.fieldcontrol.cache.BoundedCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Кэши редко меняющихся строк, которые читаются почти на каждом запросе:
+ * учётные данные по логину и текущая цель. Размер и время жизни ограничены (Caffeine).
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    /** UserCredentials по username (и отсутствие пользователя): вход. */
+    public static final String USERS = "users";
+    /** id пользователя по username: регистрация и запросы, где принципал не AppUserPrincipal. */
+    public static final String USER_IDS = "userIds";
+    /** Текущая цель (GoalView) по id пользователя. */
+    public static final String GOALS = "goals";
+
+    @Bean
+    public CacheManager cacheManager(MeterRegistry meterRegistry,
+                                     @Value("${app.cache.users.ttl:PT10M}") Duration usersTtl,
+                                     @Value("${app.cache.users.max-size:10000}") int usersMaxSize,
+                                     @Value("${app.cache.goals.ttl:PT10M}") Duration goalsTtl,
+                                     @Value("${app.cache.goals.max-size:10000}") int goalsMaxSize) {
+        return new BoundedCacheManager(List.of(
+                new BoundedCache(USERS, usersTtl, usersMaxSize),
+                new BoundedCache(USER_IDS, usersTtl, usersMaxSize),
+                new BoundedCache(GOALS, goalsTtl, goalsMaxSize)), meterRegistry);
+    }
+}
@@ -0,0 +1,25 @@
+package com.jcrpo.fieldcontrol.config;
+
+import com.jcrpo.fieldcontrol.metrics.HibernateRequestStats;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Метрики пула соединений, статистики Hibernate и времени ответа подключает Spring Boot Actuator;
+ * здесь — только счётчики запросов к БД в пределах HTTP-запроса (HibernateRequestStatsHandler).
+ */
+@Configuration
+public class MetricsConfig {
+
+    /** Счётчики запросов и загруженных сущностей для каждого HTTP-запроса. */
+    @Bean
+    public HibernatePropertiesCustomizer requestStatisticsCustomizer() {
+        HibernateRequestStats stats = new HibernateRequestStats();
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, stats);
+            properties.put(AvailableSettings.INTERCEPTOR, stats);
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package com.jcrpo.fieldcontrol.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничивает число одновременно обрабатываемых запросов /api/**.
+ * На виртуальных потоках Tomcat больше не упирается в размер пула потоков, и без этого
+ * предела всплеск запросов выстраивается в очередь к пулу соединений БД. Лишние запросы
+ * коротко ждут свободного места, а затем получают 503 с Retry-After вместо зависания.
+ */
+@Component
+// После фильтра наблюдения Spring Boot: отклонённые 503 тоже попадают в http.server.requests
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@ConditionalOnProperty(name = "app.web.max-concurrent-requests")
+public class RequestConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final long queueTimeoutNanos;
+    private final Counter rejected;
+
+    public RequestConcurrencyLimitFilter(@Value("${app.web.max-concurrent-requests}") int maxConcurrentRequests,
+                                         @Value("${app.web.queue-timeout:PT1S}") Duration queueTimeout,
+                                         MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.rejected = Counter.builder("http.server.requests.rejected")
+                .description("Requests rejected by the concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("http.server.requests.inflight", () -> maxConcurrentRequests - permits.availablePermits())
+                .description("Requests currently holding a concurrency permit")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server is busy, retry later");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -1,67 +1,91 @@
 package com.jcrpo.fieldcontrol.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
-import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-import java.io.IOException;
-import java.net.HttpURLConnection;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.Socket;
+import java.net.http.HttpClient;
+import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.time.Duration;
 
 @Configuration
 public class RestTemplateConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(RestTemplateConfig.class);
+
     // Таймауты (в миллисекундах)
     private static final int CONNECT_TIMEOUT_MS = 3000; // 3 секунды
     private static final int READ_TIMEOUT_MS = 4000;    // 4 секунды
 
+    /**
+     * Один общий java.net.http.HttpClient: соединения переиспользуются (keep-alive пул)
+     * вместо нового HttpURLConnection и TLS-рукопожатия на каждый вызов.
+     * Сертификат и имя хоста проверяются; app.http.dev-trust-all-certificates отключает обе
+     * проверки только для этого клиента — для стендов с самоподписанными сертификатами.
+     */
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) throws Exception {
-        // WARNING: trust-all для разработки. Уберите/замените в продакшне.
-        TrustManager[] trustAllCerts = new TrustManager[]{
-                new X509TrustManager() {
-                    @Override
-                    public X509Certificate[] getAcceptedIssuers() {
-                        return new X509Certificate[0];
-                    }
-                    @Override
-                    public void checkClientTrusted(X509Certificate[] certs, String authType) { /* trust all */ }
-                    @Override
-                    public void checkServerTrusted(X509Certificate[] certs, String authType) { /* trust all */ }
-                }
-        };
+    public HttpClient outboundHttpClient(
+            @Value("${app.http.dev-trust-all-certificates:false}") boolean trustAllCertificates) throws Exception {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(CONNECT_TIMEOUT_MS))
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (trustAllCertificates) {
+            log.warn("TLS certificate and hostname verification is DISABLED for outbound HTTP "
+                    + "(app.http.dev-trust-all-certificates=true); never use this outside development");
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[]{new TrustAllManager()}, new SecureRandom());
+            builder.sslContext(sslContext);
+        }
+        return builder.build();
+    }
 
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, trustAllCerts, new java.security.SecureRandom());
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, HttpClient outboundHttpClient) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(outboundHttpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(READ_TIMEOUT_MS));
+        return builder
+                .requestFactory(() -> requestFactory)
+                .build();
+    }
 
-        // Фабрика с установкой SSL-сокет-фабрики и hostname verifier
-        SimpleClientHttpRequestFactory customRequestFactory = new SimpleClientHttpRequestFactory() {
-            @Override
-            protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
-                if (connection instanceof HttpsURLConnection) {
-                    ((HttpsURLConnection) connection).setSSLSocketFactory(sslContext.getSocketFactory());
-                    ((HttpsURLConnection) connection).setHostnameVerifier((hostname, session) -> true);
-                }
-                super.prepareConnection(connection, httpMethod);
-            }
-        };
+    /**
+     * Принимает любой сертификат. Именно X509ExtendedTrustManager: JSSE сверяет имя хоста
+     * внутри методов с SSLEngine/Socket, а простой X509TrustManager обернул бы проверкой имени.
+     */
+    private static final class TrustAllManager extends X509ExtendedTrustManager {
 
-        // Установим таймауты в фабрике (миллисекунды)
-        customRequestFactory.setConnectTimeout(CONNECT_TIMEOUT_MS);
-        customRequestFactory.setReadTimeout(READ_TIMEOUT_MS);
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
 
-        // И установим таймауты через RestTemplateBuilder (для дополнительной совместимости)
-        return builder
-                .requestFactory(() -> customRequestFactory)
-                .setConnectTimeout(Duration.ofMillis(CONNECT_TIMEOUT_MS))
-                .setReadTimeout(Duration.ofMillis(READ_TIMEOUT_MS))
-                .build();
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) { /* trust all */ }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) { /* trust all */ }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) { /* trust all */ }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) { /* trust all */ }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) { /* trust all */ }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) { /* trust all */ }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,10 @@
+package com.jcrpo.fieldcontrol.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/** Включает @Scheduled-задачи: фоновая очистка истории, обслуживание секций операций, обновление курсов валют. */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
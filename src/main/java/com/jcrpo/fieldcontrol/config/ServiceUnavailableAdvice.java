@@ -0,0 +1,40 @@
+package com.jcrpo.fieldcontrol.config;
+
+import com.jcrpo.fieldcontrol.service.JournalFullException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+/**
+ * Исчерпанный пул соединений (connection-timeout Hikari) или недоступная БД — это
+ * временная перегрузка, а не ошибка сервера: клиент получает 503 и может повторить запрос.
+ * То же — при переполненном журнале операций.
+ */
+@RestControllerAdvice
+public class ServiceUnavailableAdvice {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceUnavailableAdvice.class);
+
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public ResponseEntity<Map<String, String>> databaseUnavailable(RuntimeException e) {
+        log.warn("Database connection unavailable: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", "Database is busy, retry later"));
+    }
+
+    @ExceptionHandler(JournalFullException.class)
+    public ResponseEntity<Map<String, String>> journalFull(JournalFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", e.getMessage()));
+    }
+}
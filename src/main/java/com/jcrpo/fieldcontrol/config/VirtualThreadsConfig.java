@@ -0,0 +1,24 @@
+package com.jcrpo.fieldcontrol.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * spring.threads.virtual.enabled действует только на JRE 21+: на 17 Spring Boot молча оставляет
+ * платформенные потоки, а профиль virtual уже поднял пул соединений и снял очередь Tomcat.
+ * Такой запуск не стартует, чтобы результаты замеров не приписывались не тому режиму.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    static final int REQUIRED_JAVA = 21;
+
+    public VirtualThreadsConfig() {
+        int feature = Runtime.version().feature();
+        if (feature < REQUIRED_JAVA) {
+            throw new IllegalStateException("spring.threads.virtual.enabled=true requires Java " + REQUIRED_JAVA
+                    + "+, but the application runs on Java " + feature);
+        }
+    }
+}
@@ -2,11 +2,21 @@ package com.jcrpo.fieldcontrol.controller;
 
 import com.jcrpo.fieldcontrol.model.User;
 import com.jcrpo.fieldcontrol.repository.UserRepository;
+import com.jcrpo.fieldcontrol.security.AppUserPrincipal;
+import com.jcrpo.fieldcontrol.security.LoginRateLimiter;
+import com.jcrpo.fieldcontrol.security.LoginThrottledException;
+import com.jcrpo.fieldcontrol.security.TokenService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -18,9 +28,11 @@ public class AuthController {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenService tokenService;
+    private final LoginRateLimiter loginRateLimiter;
 
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@RequestBody RegistrationRequest request) {
+    public ResponseEntity<?> registerUser(@RequestBody RegistrationRequest request, HttpServletRequest httpRequest) {
         try {
             // Валидация входных данных
             if (request.getUsername() == null || request.getUsername().trim().isEmpty()) {
@@ -32,10 +44,13 @@ public class AuthController {
             }
 
             // Проверка существования пользователя
-            if (userRepository.findByUsername(request.getUsername()).isPresent()) {
+            if (userRepository.findIdByUsername(request.getUsername()).isPresent()) {
                 return ResponseEntity.badRequest().body("Username is already taken!");
             }
 
+            // Хеширование — в общем ограниченном пуле, поэтому и регистрации считаются по адресу
+            loginRateLimiter.checkRegistration(httpRequest.getRemoteAddr());
+
             // Создание и сохранение пользователя
             User user = new User();
             user.setUsername(request.getUsername().trim());
@@ -44,12 +59,61 @@ public class AuthController {
             userRepository.save(user);
 
             return ResponseEntity.ok("User registered successfully!");
+        } catch (LoginThrottledException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError().body("Registration failed: " + e.getMessage());
         }
     }
 
+    /** Выдаёт подписанный токен для текущего (Basic) пользователя, если режим токенов включён */
+    @PostMapping("/token")
+    public ResponseEntity<?> issueToken(@AuthenticationPrincipal AppUserPrincipal principal) {
+        if (!tokenService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Token authentication is disabled");
+        }
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Authentication required");
+        }
+        return ResponseEntity.ok(tokenService.issue(principal));
+    }
+
+    @PutMapping("/password")
+    public ResponseEntity<?> changePassword(@AuthenticationPrincipal AppUserPrincipal principal,
+                                            @RequestBody PasswordChangeRequest request) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Authentication required");
+        }
+        if (request.getNewPassword() == null || request.getNewPassword().length() < 4) {
+            return ResponseEntity.badRequest().body("Password must be at least 4 characters long");
+        }
+        User user = userRepository.findById(principal.getUserId()).orElse(null);
+        if (user == null || request.getCurrentPassword() == null
+                || !passwordEncoder.matches(request.getCurrentPassword(), user.getPassword())) {
+            return ResponseEntity.badRequest().body("Current password is incorrect");
+        }
+        // UserCredentialsListener сбросит кэш учётных данных и отзовёт старые токены
+        user.setPassword(passwordEncoder.encode(request.getNewPassword()));
+        user.setCredentialVersion(user.getCredentialVersion() + 1);
+        userRepository.save(user);
+        return ResponseEntity.ok("Password changed successfully!");
+    }
+
+    /** Смена пароля тоже проходит через пул хеширования (см. BoundedPasswordEncoder). */
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<?> tooManyRequests(LoginThrottledException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+
+    @Data
+    static class PasswordChangeRequest {
+        private String currentPassword;
+        private String newPassword;
+    }
+
     @Data
     static class RegistrationRequest {
         private String username;
@@ -1,57 +1,99 @@
 package com.jcrpo.fieldcontrol.controller;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jcrpo.fieldcontrol.model.RateSnapshot;
+import com.jcrpo.fieldcontrol.service.CurrencyRateService;
 import lombok.RequiredArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/currency")
 @RequiredArgsConstructor
 public class CurrencyController {
 
-    private static final Logger log = LoggerFactory.getLogger(CurrencyController.class);
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // Курсы обновляются раз в 15 минут; минута свежести + ревалидация по ETag
+    private static final CacheControl RATES_CACHE = CacheControl.maxAge(Duration.ofMinutes(1)).cachePublic();
 
-    private final RestTemplate restTemplate;
-    private static final String BELARUSBANK_API_URL = "https://belarusbank.by/api/kursExchange?city=Минск";
+    private final CurrencyRateService currencyRateService;
 
-    // Кэш курсов
-    private static String cachedRates = "[{\"USD_in\":3.2000,\"USD_out\":3.2500}]"; // минимальные значения по умолчанию
-    private static Instant lastUpdate = Instant.EPOCH;
-
-    /** Возвращает кэшированные данные — мгновенно, без запроса во внешний интернет */
+    /** Возвращает разобранные курсы из памяти — мгновенно, без запроса во внешний интернет */
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> getCurrencyRates() {
+    public ResponseEntity<RatesResponse> getCurrencyRates(WebRequest request) {
+        RateSnapshot snapshot = currencyRateService.current();
+        if (request.checkNotModified(snapshot.getEtag())) {
+            return null; // 304 уже сформирован
+        }
         return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(cachedRates);
+                .eTag(snapshot.getEtag())
+                .cacheControl(RATES_CACHE)
+                .body(new RatesResponse(RateSnapshot.BASE, snapshot.getUpdatedAt(), snapshot.toRateMap()));
     }
 
-    /** Фоновое обновление курсов раз в 15 минут — не блокирует вход */
-    @Scheduled(fixedDelay = 15 * 60 * 1000)
-    public void refreshRates() {
-        try {
-            var resp = restTemplate.getForEntity(BELARUSBANK_API_URL, String.class);
-            if (resp.getStatusCode().is2xxSuccessful() && resp.getBody() != null && !resp.getBody().isBlank()) {
-                // проверим что это JSON
-                JsonNode node = MAPPER.readTree(resp.getBody());
-                cachedRates = resp.getBody();
-                lastUpdate = Instant.now();
-                log.info("Currency rates updated successfully at {}", lastUpdate);
-            }
-        } catch (Exception ex) {
-            log.warn("Failed to refresh currency rates: {}", ex.toString());
+    /** Курсы, действовавшие на конец указанного дня (из сохранённой истории) */
+    @GetMapping(value = "/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<RatesResponse> getHistoricalRates(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            WebRequest request) {
+        RateSnapshot snapshot = snapshotFor(date);
+        if (request.checkNotModified(snapshot.getEtag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .cacheControl(RATES_CACHE)
+                .body(new RatesResponse(RateSnapshot.BASE, snapshot.getUpdatedAt(), snapshot.toRateMap()));
+    }
+
+    /**
+     * Конвертация суммы на сервере: /api/currency/convert?amount=100&from=USD&to=BYN;
+     * с параметром date — по курсу указанного дня.
+     */
+    @GetMapping(value = "/convert", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ConversionResponse> convert(@RequestParam double amount,
+                                                      @RequestParam String from,
+                                                      @RequestParam String to,
+                                                      @RequestParam(required = false)
+                                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                                      WebRequest request) {
+        RateSnapshot snapshot = date == null ? currencyRateService.current() : snapshotFor(date);
+        String fromCode = from.trim().toUpperCase();
+        String toCode = to.trim().toUpperCase();
+        double rate = snapshot.rate(fromCode, toCode);
+        if (Double.isNaN(rate)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown currency pair " + fromCode + "/" + toCode);
+        }
+        if (request.checkNotModified(snapshot.getEtag())) {
+            return null;
         }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .cacheControl(RATES_CACHE)
+                .body(new ConversionResponse(amount, fromCode, toCode, rate, amount * rate, snapshot.getUpdatedAt()));
+    }
+
+    private RateSnapshot snapshotFor(LocalDate date) {
+        return currencyRateService.ratesAt(date)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No rates recorded for " + date));
+    }
+
+    public record RatesResponse(String base, Instant updatedAt, Map<String, Map<String, Double>> rates) {
+    }
+
+    public record ConversionResponse(double amount, String from, String to, double rate, double result,
+                                     Instant ratesUpdatedAt) {
     }
 }
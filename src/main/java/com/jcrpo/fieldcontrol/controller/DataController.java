@@ -1,66 +1,480 @@
 package com.jcrpo.fieldcontrol.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.jcrpo.fieldcontrol.dto.AnalyticsReport;
+import com.jcrpo.fieldcontrol.dto.BalanceSummary;
+import com.jcrpo.fieldcontrol.dto.BatchIngestResult;
+import com.jcrpo.fieldcontrol.dto.DataVersion;
+import com.jcrpo.fieldcontrol.dto.GoalView;
+import com.jcrpo.fieldcontrol.dto.HistoryCursor;
+import com.jcrpo.fieldcontrol.dto.ImportResult;
+import com.jcrpo.fieldcontrol.dto.TransactionFilter;
+import com.jcrpo.fieldcontrol.dto.TransactionPage;
+import com.jcrpo.fieldcontrol.dto.TransactionView;
 import com.jcrpo.fieldcontrol.model.Goal;
+import com.jcrpo.fieldcontrol.model.ImportJob;
+import com.jcrpo.fieldcontrol.model.PurgeJob;
 import com.jcrpo.fieldcontrol.model.Transaction;
-import com.jcrpo.fieldcontrol.model.User;
 import com.jcrpo.fieldcontrol.repository.UserRepository;
+import com.jcrpo.fieldcontrol.security.AppUserPrincipal;
+import com.jcrpo.fieldcontrol.service.AnalyticsService;
+import com.jcrpo.fieldcontrol.service.CsvTransactionWriter;
 import com.jcrpo.fieldcontrol.service.DataService;
+import com.jcrpo.fieldcontrol.service.ImportService;
+import com.jcrpo.fieldcontrol.service.JsonTransactionSource;
+import com.jcrpo.fieldcontrol.service.LiveUpdateService;
+import com.jcrpo.fieldcontrol.service.PurgeService;
+import com.jcrpo.fieldcontrol.service.TransactionIngestService;
+import com.jcrpo.fieldcontrol.service.TransactionJournal;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.Duration;
 import java.time.LocalDateTime; // <-- Импортируем LocalDateTime
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/data")
 @RequiredArgsConstructor
 public class DataController {
 
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    // Браузер хранит ответ, но перед использованием сверяет ETag (If-None-Match -> 304)
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+    // Сколько удаление истории ждёт, пока журнал допишет операции пользователя в БД
+    private static final Duration JOURNAL_DRAIN_TIMEOUT = Duration.ofSeconds(10);
+
     private final DataService dataService;
+    private final TransactionIngestService ingestService;
+    private final PurgeService purgeService;
+    private final AnalyticsService analyticsService;
+    private final LiveUpdateService liveUpdateService;
+    private final ImportService importService;
+    private final TransactionJournal journal;
     private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * Полные данные пользователя; операции пишутся в ответ прямо из курсора БД.
+     * Холодная история (месяцы старше горизонта секций) сюда не входит — она доступна
+     * через /transactions, /transactions/stream и /export с includeArchived=true.
+     * ETag — версия данных: если она не изменилась, ответ 304 без обращения к истории.
+     * Операции журнала, ещё не записанные в БД, идут первыми (они новее).
+     */
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getUserData(Authentication authentication) {
-        User user = getUserFromAuthentication(authentication);
-        Map<String, Object> userData = new HashMap<>();
-        userData.put("goal", dataService.getGoal(user).orElse(null));
-        userData.put("transactions", dataService.getAllUserTransactions(user));
-        return ResponseEntity.ok(userData);
+    public ResponseEntity<StreamingResponseBody> getUserData(WebRequest request, Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        DataVersion version = dataService.getDataVersion(userId);
+        List<TransactionView> pending = journal.pending(userId);
+        String etag = version.etag(lastId(pending));
+        if (request.checkNotModified(etag)) {
+            return null; // 304 уже сформирован
+        }
+        GoalView goal = dataService.getGoal(userId).orElse(null);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.createGenerator(new BufferedOutputStream(out))) {
+                json.writeStartObject();
+                json.writeNumberField("version", version.version());
+                json.writeObjectField("goal", goal);
+                json.writeArrayFieldStart("transactions");
+                writeWithPending(json, pending, consumer ->
+                        dataService.forEachTransaction(userId, TransactionFilter.none(), consumer));
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(REVALIDATE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    /**
+     * Изменения после версии since: новая цель (если менялась) и добавленные операции.
+     * reset=true — история удалялась или since неизвестна серверу: клиент отбрасывает
+     * локальную копию и берёт переданные данные целиком. Клиент объединяет операции по id:
+     * операции журнала приходят сразу и повторно — в той версии, в которой попадут в БД.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<StreamingResponseBody> getChanges(@RequestParam long since,
+                                                            WebRequest request,
+                                                            Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        if (since < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "since must not be negative");
+        }
+        DataVersion version = dataService.getDataVersion(userId);
+        List<TransactionView> pending = journal.pending(userId);
+        String etag = version.etag(lastId(pending));
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        long upTo = version.version();
+        boolean reset = since == 0 || since > upTo || version.resetVersion() > since;
+        GoalView goal = reset
+                ? dataService.getGoal(userId).orElse(null)
+                : dataService.getGoalChangedSince(userId, since, upTo).orElse(null);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.createGenerator(new BufferedOutputStream(out))) {
+                json.writeStartObject();
+                json.writeNumberField("version", upTo);
+                json.writeBooleanField("reset", reset);
+                json.writeObjectField("goal", goal);
+                json.writeArrayFieldStart("transactions");
+                writeWithPending(json, pending, consumer -> {
+                    if (reset) {
+                        dataService.forEachTransaction(userId, TransactionFilter.none(), consumer);
+                    } else {
+                        dataService.forEachChange(userId, since, upTo, consumer);
+                    }
+                });
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(REVALIDATE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    /** Сводка для дашборда: время ответа не зависит от длины истории */
+    @GetMapping("/summary")
+    public ResponseEntity<BalanceSummary> getSummary(@RequestParam(required = false) String currency,
+                                                     Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        try {
+            return ResponseEntity.ok(dataService.getSummary(userId,
+                    currency == null || currency.isBlank() ? null : currency.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Итоги за период по категориям, дням, неделям и месяцам из дневных агрегатов.
+     * По умолчанию — расходы за последние 30 дней.
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<AnalyticsReport> getAnalytics(
+            @RequestParam(defaultValue = "EXPENSE") String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        if (start.isAfter(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        }
+        return ResponseEntity.ok(analyticsService.report(userId, type.trim().toUpperCase(), start, end));
+    }
+
+    /**
+     * История операций постранично (новые сначала), курсор из предыдущего ответа.
+     * includeArchived=true — вместе с холодной историей (месяцы старше горизонта секций).
+     */
+    @GetMapping("/transactions")
+    public ResponseEntity<TransactionPage> getTransactions(
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        HistoryCursor after = parseCursor(cursor);
+        return ResponseEntity.ok(dataService.getTransactionPage(userId,
+                new TransactionFilter(type, from, to, includeArchived), after, limit));
+    }
+
+    /** Выгрузка истории в NDJSON (по одной операции на строку) с постоянным расходом памяти */
+    @GetMapping(value = "/transactions/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamTransactions(
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        return ResponseEntity.ok().contentType(NDJSON)
+                .body(ndjsonBody(userId, new TransactionFilter(type, from, to, includeArchived)));
+    }
+
+    /**
+     * Выгрузка истории файлом (format=csv|ndjson) прямо из курсора БД: память сервера
+     * не зависит от числа операций. CSV читается обратно через POST /import.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        TransactionFilter filter = new TransactionFilter(type, from, to, includeArchived);
+        StreamingResponseBody body;
+        MediaType contentType;
+        switch (format) {
+            case "csv" -> {
+                contentType = CSV;
+                body = out -> {
+                    try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                        CsvTransactionWriter csv = new CsvTransactionWriter(writer);
+                        dataService.forEachTransaction(userId, filter, csv::write);
+                    }
+                };
+            }
+            case "ndjson" -> {
+                contentType = NDJSON;
+                body = ndjsonBody(userId, filter);
+            }
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be csv or ndjson");
+        }
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename("transactions-" + LocalDate.now() + "." + format)
+                .build();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .contentType(contentType)
+                .body(body);
+    }
+
+    /**
+     * Загрузка CSV-выписки (тело запроса — файл). Прогресс виден через GET /import/{id};
+     * прерванную загрузку продолжают тем же файлом с resume={id}.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<ImportResult> importTransactions(
+            @RequestParam(required = false) Long resume,
+            @RequestParam(required = false) String name,
+            HttpServletRequest request,
+            Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        try {
+            return ResponseEntity.ok(importService.importCsv(userId, resume, name, request.getInputStream()));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Import interrupted: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/import/{id}")
+    public ResponseEntity<ImportJob> getImportJob(@PathVariable Long id, Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        return importService.getJob(userId, id)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Import job not found."));
+    }
+
+    /**
+     * Поток событий для открытой страницы (text/event-stream): ready, transaction, goal,
+     * balance, reset, resync, rates. При resync клиент догружает /changes по своей версии.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(Authentication authentication) {
+        return liveUpdateService.subscribe(getUserIdFromAuthentication(authentication));
     }
 
     @PostMapping("/goal")
     public ResponseEntity<Goal> saveGoal(@RequestBody Goal goal, Authentication authentication) {
-        User user = getUserFromAuthentication(authentication);
-        return ResponseEntity.ok(dataService.saveGoal(goal, user));
+        Long userId = getUserIdFromAuthentication(authentication);
+        try {
+            return ResponseEntity.ok(dataService.saveGoal(goal, userId));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
-    // НОВЫЙ МЕТОД для удаления цели
+    // async=true: цель удаляется сразу, история очищается в фоне (202 + задача очистки)
     @DeleteMapping("/goal")
-    public ResponseEntity<Void> deleteGoal(Authentication authentication) {
-        User user = getUserFromAuthentication(authentication);
-        dataService.deleteGoalAndTransactions(user); // Теперь этот метод существует
+    public ResponseEntity<PurgeJob> deleteGoal(@RequestParam(defaultValue = "false") boolean async,
+                                               Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        awaitJournal(userId);
+        if (async) {
+            PurgeJob job = purgeService.requestPurge(userId);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/data/purge/" + job.getId()))
+                    .body(job);
+        }
+        dataService.deleteGoalAndTransactions(userId);
         return ResponseEntity.noContent().build();
     }
 
+    /** Прогресс фоновой очистки: status, totalRows, deletedRows */
+    @GetMapping("/purge/{id}")
+    public ResponseEntity<PurgeJob> getPurgeJob(@PathVariable Long id, Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        return purgeService.getJob(userId, id)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Purge job not found."));
+    }
+
+    /** С включённым журналом ответ 202: операция на диске и появится в БД после ближайшего пакета. */
     @PostMapping("/transaction")
     public ResponseEntity<Transaction> saveTransaction(@RequestBody Transaction transaction, Authentication authentication) {
-        User user = getUserFromAuthentication(authentication);
+        Long userId = getUserIdFromAuthentication(authentication);
         transaction.setDate(LocalDate.now());
-        transaction.setTimestamp(LocalDateTime.now()); // Теперь этот метод существует
-        return ResponseEntity.ok(dataService.saveTransaction(transaction, user));
+        transaction.setTimestamp(LocalDateTime.now());
+        if (transaction.getAmountMinor() <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "amount must be a positive number");
+        }
+        try {
+            if (journal.isEnabled()) {
+                return ResponseEntity.accepted().body(journal.append(userId, transaction));
+            }
+            return ResponseEntity.ok(dataService.saveTransaction(transaction, userId));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Пакетная загрузка JSON-массива операций. mode=atomic — всё или ничего (422 при ошибке),
+     * mode=chunked — порции фиксируются по отдельности, некорректные строки пропускаются.
+     */
+    @PostMapping("/transactions/batch")
+    public ResponseEntity<BatchIngestResult> saveTransactionsBatch(
+            @RequestParam(defaultValue = "atomic") String mode,
+            HttpServletRequest request,
+            Authentication authentication) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        boolean atomic = switch (mode) {
+            case "atomic" -> true;
+            case "chunked" -> false;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "mode must be atomic or chunked");
+        };
+        BatchIngestResult result;
+        try {
+            result = ingestService.ingest(userId, new JsonTransactionSource(objectMapper, request.getInputStream()), atomic);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed batch: " + e.getMessage());
+        }
+        return result.committed()
+                ? ResponseEntity.ok(result)
+                : ResponseEntity.unprocessableEntity().body(result);
     }
 
-    private User getUserFromAuthentication(Authentication authentication) {
+    // id берётся из принципала; запрос к users нужен только для чужих типов аутентификации
+    private Long getUserIdFromAuthentication(Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not authenticated.");
         }
-        return userRepository.findByUsername(authentication.getName())
+        if (authentication.getPrincipal() instanceof AppUserPrincipal principal) {
+            return principal.getUserId();
+        }
+        return userRepository.findIdByUsername(authentication.getName())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Authenticated user not found in database."));
     }
-}
\ No newline at end of file
+
+    private void awaitJournal(Long userId) {
+        try {
+            if (!journal.awaitApplied(userId, JOURNAL_DRAIN_TIMEOUT)) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Recent transactions are still being saved, retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while saving recent transactions");
+        }
+    }
+
+    private static long lastId(List<TransactionView> pending) {
+        return pending.isEmpty() ? 0 : pending.get(pending.size() - 1).id();
+    }
+
+    /**
+     * Сначала операции журнала (новые первыми), затем строки из БД. Снимок журнала взят до
+     * чтения БД, поэтому операция, записанная в БД за это время, пропускается по id.
+     */
+    private static void writeWithPending(JsonGenerator json, List<TransactionView> pending,
+                                         Consumer<Consumer<TransactionView>> rows) {
+        Set<Long> written = new HashSet<>(pending.size() * 2);
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            writeQuietly(json, pending.get(i));
+            written.add(pending.get(i).id());
+        }
+        rows.accept(t -> {
+            if (written.isEmpty() || !written.contains(t.id())) {
+                writeQuietly(json, t);
+            }
+        });
+    }
+
+    private static HistoryCursor parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return HistoryCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private StreamingResponseBody ndjsonBody(Long userId, TransactionFilter filter) {
+        return out -> {
+            try (SequenceWriter writer = objectMapper.writer()
+                    .withRootValueSeparator("\n")
+                    .writeValues(new BufferedOutputStream(out))) {
+                dataService.forEachTransaction(userId, filter, t -> writeQuietly(writer, t));
+            }
+        };
+    }
+
+    private static void writeQuietly(JsonGenerator json, Object value) {
+        try {
+            json.writeObject(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeQuietly(SequenceWriter writer, Object value) {
+        try {
+            writer.write(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
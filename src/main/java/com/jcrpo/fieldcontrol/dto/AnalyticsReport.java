@@ -0,0 +1,26 @@
+package com.jcrpo.fieldcontrol.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.jcrpo.fieldcontrol.model.Money;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/** Итоги за период по категориям, дням, неделям (с понедельника) и месяцам. Суммы — в сотых. */
+public record AnalyticsReport(
+        String type,
+        LocalDate from,
+        LocalDate to,
+        @Money.MinorUnits long total,
+        long count,
+        @JsonSerialize(contentUsing = Money.Serializer.class) Map<String, Long> byCategory,
+        List<Bucket> byDay,
+        List<Bucket> byWeek,
+        List<Bucket> byMonth
+) {
+
+    /** Итог за интервал; start — первый день интервала. */
+    public record Bucket(LocalDate start, @Money.MinorUnits long total, long count) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.jcrpo.fieldcontrol.dto;
+
+import com.jcrpo.fieldcontrol.model.Money;
+
+/** Компактная сводка для дашборда: цель и накопленные итоги без списка операций. Суммы — в сотых. */
+public record BalanceSummary(
+        GoalView goal,
+        @Money.MinorUnits long income,
+        @Money.MinorUnits long expense,
+        @Money.MinorUnits long net,
+        @Money.MinorUnits long goalCollected,
+        long transactionCount,
+        @Money.MinorUnits long todayExpense,
+        Converted converted
+) {
+
+    /**
+     * Итоги, пересчитанные из валюты цели (суммы операций хранятся в ней) в запрошенную валюту
+     * по текущим курсам; null, если валюта не запрашивалась.
+     */
+    public record Converted(String currency, double rate,
+                            @Money.MinorUnits long net,
+                            @Money.MinorUnits long goalCollected,
+                            @Money.MinorUnits long goalAmount) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.jcrpo.fieldcontrol.dto;
+
+import java.util.List;
+
+/** Итог пакетной загрузки операций вместе с показателями пропускной способности. */
+public record BatchIngestResult(
+        boolean committed,
+        long accepted,
+        long rejected,
+        int chunks,
+        long elapsedMillis,
+        double rowsPerSecond,
+        List<RowError> errors
+) {
+
+    /** Ошибка валидации строки; index — позиция строки во входных данных, начиная с 0. */
+    public record RowError(long index, String message) {
+    }
+}
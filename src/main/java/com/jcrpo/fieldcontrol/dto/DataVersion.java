@@ -0,0 +1,23 @@
+package com.jcrpo.fieldcontrol.dto;
+
+/**
+ * Версия данных пользователя. version растёт при каждом изменении цели или истории,
+ * resetVersion — версия последнего удаления истории (0, если удалений не было).
+ */
+public record DataVersion(long version, long resetVersion) {
+
+    public static final DataVersion INITIAL = new DataVersion(0, 0);
+
+    /** Сильный ETag: одинаковая версия означает побайтно тот же набор данных. */
+    public String etag() {
+        return "\"v" + version + "\"";
+    }
+
+    /**
+     * ETag с учётом операций журнала, ещё не записанных в БД (их нет в версии).
+     * pendingMarker — id последней такой операции или 0.
+     */
+    public String etag(long pendingMarker) {
+        return pendingMarker == 0 ? etag() : "\"v" + version + "-p" + pendingMarker + "\"";
+    }
+}
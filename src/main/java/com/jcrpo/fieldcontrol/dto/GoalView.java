@@ -0,0 +1,21 @@
+package com.jcrpo.fieldcontrol.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.jcrpo.fieldcontrol.model.Goal;
+import com.jcrpo.fieldcontrol.model.Money;
+
+import java.time.LocalDate;
+
+/** Проекция цели без связи с пользователем. */
+public record GoalView(
+        Long id,
+        String name,
+        @JsonProperty("amount") @Money.MinorUnits long amountMinor,
+        LocalDate date,
+        String currency
+) {
+
+    public static GoalView of(Goal goal) {
+        return new GoalView(goal.getId(), goal.getName(), goal.getAmountMinor(), goal.getDate(), goal.getCurrency());
+    }
+}
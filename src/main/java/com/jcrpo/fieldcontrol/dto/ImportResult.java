@@ -0,0 +1,10 @@
+package com.jcrpo.fieldcontrol.dto;
+
+import com.jcrpo.fieldcontrol.model.ImportJob;
+
+import java.util.List;
+
+/** Итог загрузки выписки; номера строк в errors — от начала файла (без заголовка). */
+public record ImportResult(ImportJob job, long elapsedMillis, double rowsPerSecond,
+                           List<BatchIngestResult.RowError> errors) {
+}
@@ -0,0 +1,7 @@
+package com.jcrpo.fieldcontrol.dto;
+
+import java.time.LocalDate;
+
+/** Колонки операции, из которых строится реестр счёта в памяти. */
+public record LedgerRow(long amountMinor, LocalDate date, String type, String category, long changeVersion) {
+}
@@ -0,0 +1,18 @@
+package com.jcrpo.fieldcontrol.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Необязательные фильтры истории операций: тип и диапазон дат (включительно).
+ * includeArchived — читать и холодную историю (месяцы старше горизонта секций).
+ */
+public record TransactionFilter(String type, LocalDate from, LocalDate to, boolean includeArchived) {
+
+    public TransactionFilter(String type, LocalDate from, LocalDate to) {
+        this(type, from, to, false);
+    }
+
+    public static TransactionFilter none() {
+        return new TransactionFilter(null, null, null);
+    }
+}
@@ -0,0 +1,7 @@
+package com.jcrpo.fieldcontrol.dto;
+
+import java.util.List;
+
+/** Страница истории; nextCursor == null, если дальше записей нет. */
+public record TransactionPage(List<TransactionView> items, String nextCursor) {
+}
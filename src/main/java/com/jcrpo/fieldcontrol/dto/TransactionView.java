@@ -0,0 +1,26 @@
+package com.jcrpo.fieldcontrol.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.jcrpo.fieldcontrol.model.Money;
+import com.jcrpo.fieldcontrol.model.Transaction;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/** Проекция операции: только колонки, которые показывает интерфейс. */
+public record TransactionView(
+        Long id,
+        @JsonProperty("amount") @Money.MinorUnits long amountMinor,
+        String currency,
+        String category,
+        String description,
+        String type,
+        LocalDate date,
+        LocalDateTime timestamp
+) {
+
+    public static TransactionView of(Transaction t) {
+        return new TransactionView(t.getId(), t.getAmountMinor(), t.getCurrency(), t.getCategory(),
+                t.getDescription(), t.getType(), t.getDate(), t.getTimestamp());
+    }
+}
@@ -0,0 +1,8 @@
+package com.jcrpo.fieldcontrol.dto;
+
+/**
+ * Неизменяемая проекция пользователя для входа: только то, что нужно для проверки пароля.
+ * В кэше лежит она, а не сущность User, которую общий кэш раздавал бы между сессиями и потоками.
+ */
+public record UserCredentials(Long id, String username, String passwordHash) {
+}
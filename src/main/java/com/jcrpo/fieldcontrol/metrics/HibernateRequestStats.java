@@ -0,0 +1,57 @@
+package com.jcrpo.fieldcontrol.metrics;
+
+import org.hibernate.Interceptor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.type.Type;
+
+/**
+ * Счётчики SQL-запросов и загруженных сущностей в пределах одного HTTP-запроса.
+ * Hibernate вызывает inspect() для каждого подготавливаемого запроса и onLoad() для каждой
+ * материализованной сущности; считаем только на потоках, где запрос открыт через begin().
+ */
+public class HibernateRequestStats implements StatementInspector, Interceptor {
+
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    public static void begin() {
+        CURRENT.set(new Counts());
+    }
+
+    /** Завершает подсчёт на текущем потоке; null, если begin() не вызывался. */
+    public static Counts end() {
+        Counts counts = CURRENT.get();
+        CURRENT.remove();
+        return counts;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.statements++;
+        }
+        return sql;
+    }
+
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.entitiesLoaded++;
+        }
+        return false;
+    }
+
+    public static final class Counts {
+        private int statements;
+        private int entitiesLoaded;
+
+        public int statements() {
+            return statements;
+        }
+
+        public int entitiesLoaded() {
+            return entitiesLoaded;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.jcrpo.fieldcontrol.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Число SQL-запросов и загруженных сущностей на каждый HTTP-запрос /api/**, рядом с
+ * http.server.requests. Подсчёт открывается и закрывается вместе с наблюдением запроса;
+ * для асинхронных ответов (стриминг) учитывается только часть до передачи управления
+ * асинхронному обработчику. Метка uri — шаблон маршрута, как у http.server.requests.
+ */
+@Component
+public class HibernateRequestStatsHandler implements ObservationHandler<ServerRequestObservationContext> {
+
+    // Границы корзин; Micrometer допускает только положительные, запросы без SQL попадают в le="1"
+    private static final double[] SMALL_COUNTS = {1, 2, 3, 5, 10, 20, 50, 100, 500};
+
+    private final MeterRegistry meterRegistry;
+
+    public HibernateRequestStatsHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return context instanceof ServerRequestObservationContext request
+                && request.getCarrier().getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    public void onStart(ServerRequestObservationContext context) {
+        HibernateRequestStats.begin();
+    }
+
+    @Override
+    public void onStop(ServerRequestObservationContext context) {
+        HibernateRequestStats.Counts counts = HibernateRequestStats.end();
+        if (counts == null) {
+            return; // наблюдение закрыто на другом потоке (асинхронный ответ)
+        }
+        String uri = routeOf(context);
+        summary("hibernate.statements.per.request", "SQL statements prepared per HTTP request", uri)
+                .record(counts.statements());
+        summary("hibernate.entities.loaded.per.request", "Entities loaded per HTTP request", uri)
+                .record(counts.entitiesLoaded());
+    }
+
+    private DistributionSummary summary(String name, String description, String uri) {
+        return DistributionSummary.builder(name).description(description).tag("uri", uri)
+                .serviceLevelObjectives(SMALL_COUNTS).register(meterRegistry);
+    }
+
+    private static String routeOf(ServerRequestObservationContext context) {
+        String pattern = context.getPathPattern();
+        // Запрос не дошёл до контроллера (401, 404): не плодим ряды по сырому пути
+        return pattern != null ? pattern : "UNMATCHED";
+    }
+}
@@ -0,0 +1,44 @@
+package com.jcrpo.fieldcontrol.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Операция из холодной истории (transaction_archive): месяцы старше горизонта, перенесённые
+ * TransactionPartitionService целыми секциями. Только для чтения — записи попадают сюда
+ * лишь переносом секций, удаляются вместе с историей пользователя.
+ */
+@Data
+@Entity
+@Table(name = "transaction_archive")
+public class ArchivedTransaction {
+
+    @Id
+    private Long id;
+
+    // Сумма в сотых (см. Money)
+    @Column(name = "amount_minor")
+    private long amountMinor;
+
+    @Column(length = 3)
+    private String currency;
+
+    private String category;
+    private String description;
+    private String type;
+
+    @Column(nullable = false)
+    private LocalDate date;
+
+    @Column(nullable = false)
+    private LocalDateTime timestamp;
+
+    @Column(nullable = false)
+    private long changeVersion;
+
+    @Column(name = "user_id")
+    private Long userId;
+}
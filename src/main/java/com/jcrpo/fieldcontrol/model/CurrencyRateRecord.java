@@ -0,0 +1,25 @@
+package com.jcrpo.fieldcontrol.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+/** Сохранённый снимок курсов: последний загружается при старте, остальные — история по датам. */
+@Data
+@Entity
+@Table(name = "currency_rate_snapshot",
+        indexes = @Index(name = "idx_currency_rate_snapshot_updated", columnList = "updatedAt"))
+public class CurrencyRateRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    // Компактный JSON: {"USD":{"buy":3.2,"sell":3.25},...}
+    @Column(nullable = false, columnDefinition = "text")
+    private String rates;
+}
@@ -1,27 +1,42 @@
 package com.jcrpo.fieldcontrol.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.time.LocalDate;
 
 @Data
 @Entity
+@Table(indexes = @Index(name = "idx_goal_user", columnList = "user_id"))
 public class Goal {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     private String name;
-    private double amount;
+
+    // Сумма в сотых (см. Money); в JSON — десятичное поле amount
+    @Column(name = "amount_minor", columnDefinition = "bigint not null default 0")
+    @JsonProperty("amount")
+    @Money.MinorUnits
+    private long amountMinor;
+
     private LocalDate date; // Deadline
 
     // Added currency field for the goal
     private String currency;
 
-    @ManyToOne
+    // dataVersion пользователя, в которой цель установлена (null — до версионирования)
+    private Long changeVersion;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private User user;
 }
@@ -0,0 +1,45 @@
+package com.jcrpo.fieldcontrol.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Загрузка выписки (CSV). rowsConsumed обновляется в той же транзакции, что и порция
+ * операций, поэтому прерванную загрузку можно продолжить тем же файлом с этой строки.
+ */
+@Data
+@Entity
+@Table(name = "import_job", indexes = @Index(name = "idx_import_job_user", columnList = "userId, id"))
+public class ImportJob {
+
+    public enum Status { RUNNING, INTERRUPTED, DONE }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    private String fileName;
+
+    // Заголовок файла: при продолжении должен совпасть, иначе это другой файл
+    @Column(length = 1024)
+    private String header;
+
+    private long rowsConsumed;
+    private long rowsAccepted;
+    private long rowsRejected;
+
+    @Column(length = 1024)
+    private String lastError;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,24 @@
+package com.jcrpo.fieldcontrol.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Последняя запись журнала операций, применённая к БД. Сдвигается в той же транзакции,
+ * что и вставка пакета, поэтому после сбоя журнал воспроизводится ровно с неё.
+ */
+@Data
+@Entity
+@Table(name = "journal_checkpoint")
+public class JournalCheckpoint {
+
+    // Ключ узла (app.journal.node-id): у каждого экземпляра приложения свой
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    private long appliedSeq;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,101 @@
+package com.jcrpo.fieldcontrol.model;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotationsInside;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/**
+ * Денежные суммы хранятся целым числом сотых (копейки, центы) рядом с кодом валюты:
+ * сложение точное, а агрегаты не упаковывают double. В API суммы остаются десятичными
+ * числами — преобразование на границе JSON, см. {@link MinorUnits}.
+ */
+public final class Money {
+
+    /** Знаков после запятой у всех поддерживаемых валют (BYN, USD, EUR, RUB...). */
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /** Сумма в сотых; лишние знаки округляются (12.345 -> 1235), переполнение long — ошибка. */
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /** Разбор текста вида 1234.5 или 1234,50. */
+    public static long parse(String amount) {
+        return toMinor(new BigDecimal(amount.trim().replace(',', '.')));
+    }
+
+    public static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    public static String format(long minor) {
+        return toDecimal(minor).toPlainString();
+    }
+
+    /** Пересчёт по курсу; курсы сами по себе приближённые, поэтому через double. */
+    public static long convert(long minor, double rate) {
+        return Math.round(minor * rate);
+    }
+
+    /** Код валюты ISO 4217 в верхнем регистре или null, если строка им не является. */
+    public static String currencyCode(String currency) {
+        if (currency == null) {
+            return null;
+        }
+        String code = currency.trim().toUpperCase(Locale.ROOT);
+        return code.length() == 3 && code.chars().allMatch(c -> c >= 'A' && c <= 'Z') ? code : null;
+    }
+
+    /** Поле или компонент record с суммой в сотых: в JSON читается и пишется десятичным числом. */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER})
+    @JacksonAnnotationsInside
+    @JsonSerialize(using = Serializer.class)
+    @JsonDeserialize(using = Deserializer.class)
+    public @interface MinorUnits {
+    }
+
+    public static class Serializer extends JsonSerializer<Long> {
+        @Override
+        public void serialize(Long minor, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeNumber(toDecimal(minor));
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Long> {
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            try {
+                if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                    return toMinor(parser.getDecimalValue());
+                }
+                if (token == JsonToken.VALUE_STRING) {
+                    return parse(parser.getText());
+                }
+            } catch (ArithmeticException | NumberFormatException e) {
+                return (Long) context.handleWeirdStringValue(Long.class, parser.getText(), "not a valid amount");
+            }
+            return (Long) context.handleUnexpectedToken(Long.class, parser);
+        }
+    }
+}
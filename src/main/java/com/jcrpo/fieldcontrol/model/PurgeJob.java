@@ -0,0 +1,38 @@
+package com.jcrpo.fieldcontrol.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Фоновая очистка истории пользователя. Хранится в БД, поэтому после перезапуска
+ * обработка продолжается с того же места: удаление порциями идемпотентно.
+ */
+@Data
+@Entity
+@Table(name = "purge_job", indexes = @Index(name = "idx_purge_job_status", columnList = "status, id"))
+public class PurgeJob {
+
+    public enum Status { PENDING, DONE }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    // Удаляются операции с версией данных меньше этой — зафиксированные до запроса
+    @Column(nullable = false)
+    private Long resetVersion;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    private long totalRows;
+    private long deletedRows;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
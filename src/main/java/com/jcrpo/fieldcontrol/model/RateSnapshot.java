@@ -0,0 +1,103 @@
+package com.jcrpo.fieldcontrol.model;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Неизменяемый снимок курсов валют к BYN. Данные лежат в примитивных массивах,
+ * курсы для всех пар посчитаны заранее, поэтому чтение не аллоцирует и не блокирует.
+ * Семантика как в конвертере на клиенте: сумма переводится в BYN по курсу покупки
+ * исходной валюты, затем в целевую валюту по курсу продажи.
+ */
+public final class RateSnapshot {
+
+    public static final String BASE = "BYN";
+
+    private final String[] codes;      // отсортированы для бинарного поиска
+    private final double[] buy;        // BYN за 1 единицу валюты, банк покупает
+    private final double[] sell;       // BYN за 1 единицу валюты, банк продаёт
+    private final double[] pairRates;  // [from * n + to]
+    private final Instant updatedAt;
+    private final String etag;
+
+    private RateSnapshot(String[] codes, double[] buy, double[] sell, Instant updatedAt) {
+        int n = codes.length;
+        this.codes = codes;
+        this.buy = buy;
+        this.sell = sell;
+        this.updatedAt = updatedAt;
+        this.pairRates = new double[n * n];
+        for (int from = 0; from < n; from++) {
+            for (int to = 0; to < n; to++) {
+                pairRates[from * n + to] = from == to ? 1.0 : buy[from] / sell[to];
+            }
+        }
+        this.etag = "\"" + Integer.toHexString(contentHash()) + "\"";
+    }
+
+    /** @param rates код валюты -> {покупка, продажа} в BYN за 1 единицу; BYN добавляется сам */
+    public static RateSnapshot of(Map<String, double[]> rates, Instant updatedAt) {
+        Map<String, double[]> all = new LinkedHashMap<>(rates);
+        all.put(BASE, new double[]{1.0, 1.0});
+        String[] codes = all.keySet().toArray(new String[0]);
+        Arrays.sort(codes);
+        double[] buy = new double[codes.length];
+        double[] sell = new double[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            double[] pair = all.get(codes[i]);
+            buy[i] = pair[0];
+            sell[i] = pair[1];
+        }
+        return new RateSnapshot(codes, buy, sell, updatedAt);
+    }
+
+    public int indexOf(String code) {
+        return code == null ? -1 : Math.max(-1, Arrays.binarySearch(codes, code));
+    }
+
+    /** Курс from -> to или NaN, если одна из валют неизвестна. */
+    public double rate(String from, String to) {
+        int i = indexOf(from);
+        int j = indexOf(to);
+        return i < 0 || j < 0 ? Double.NaN : pairRates[i * codes.length + j];
+    }
+
+    public double convert(double amount, String from, String to) {
+        return amount * rate(from, to);
+    }
+
+    /** Те же курсы с другим временем — нужно, чтобы не менять ETag при неизменных данных. */
+    public boolean sameRatesAs(RateSnapshot other) {
+        return other != null && Arrays.equals(codes, other.codes)
+                && Arrays.equals(buy, other.buy) && Arrays.equals(sell, other.sell);
+    }
+
+    /** Представление для JSON: { "USD": { "buy": ..., "sell": ... }, ... } */
+    public Map<String, Map<String, Double>> toRateMap() {
+        Map<String, Map<String, Double>> view = new LinkedHashMap<>();
+        for (int i = 0; i < codes.length; i++) {
+            view.put(codes[i], Map.of("buy", buy[i], "sell", sell[i]));
+        }
+        return view;
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /** Сильный ETag: меняется вместе с курсами и временем их обновления. */
+    public String getEtag() {
+        return etag;
+    }
+
+    private int contentHash() {
+        return 31 * (31 * Arrays.hashCode(codes) + Arrays.hashCode(buy)) + Arrays.hashCode(sell)
+                ^ Long.hashCode(updatedAt.toEpochMilli());
+    }
+}
@@ -0,0 +1,41 @@
+package com.jcrpo.fieldcontrol.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Дневной итог по пользователю, типу и категории. Обновляется при каждой записи операции,
+ * поэтому аналитика читает несколько сотен строк вместо всей истории.
+ */
+@Data
+@Entity
+@Table(name = "spending_rollup", uniqueConstraints = @UniqueConstraint(
+        name = "uk_spending_rollup_key", columnNames = {"user_id", "day", "type", "category"}))
+public class SpendingRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "day", nullable = false)
+    private LocalDate day;
+
+    @Column(name = "type", nullable = false, length = 16)
+    private String type;
+
+    // Пустая строка вместо null, чтобы ключ уникальности работал
+    @Column(name = "category", nullable = false)
+    private String category;
+
+    // Сумма в сотых (см. Money)
+    @Column(name = "total_minor", columnDefinition = "bigint not null default 0")
+    private long total;
+
+    @Column(name = "tx_count", nullable = false)
+    private long txCount;
+}
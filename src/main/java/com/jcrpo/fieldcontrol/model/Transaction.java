@@ -1,28 +1,74 @@
 package com.jcrpo.fieldcontrol.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.time.LocalDate;
 import java.time.LocalDateTime; // <-- Импортируем LocalDateTime
 
+/**
+ * Операция. Таблица секционирована по месяцам date (первичный ключ в БД — (id, date));
+ * месяцы старше горизонта переносятся в transaction_archive, см. {@link ArchivedTransaction}.
+ */
 @Data
 @Entity
+@Table(indexes = {
+        // Keyset-пагинация истории: where user_id = ? order by timestamp desc, id desc
+        @Index(name = "idx_transaction_user_timestamp", columnList = "user_id, timestamp, id"),
+        // Операции за день (сегодняшние расходы, фильтры по диапазону дат)
+        @Index(name = "idx_transaction_user_date", columnList = "user_id, date"),
+        // История по типу: where user_id = ? and type = ? order by timestamp desc
+        @Index(name = "idx_transaction_user_type_timestamp", columnList = "user_id, type, timestamp"),
+        // Изменения с версии N: where user_id = ? and change_version > ?
+        @Index(name = "idx_transaction_user_change_version", columnList = "user_id, change_version"),
+        // Ночной пересчёт агрегатов: пользователи с операциями за последние дни
+        @Index(name = "idx_transaction_date", columnList = "date")
+})
 public class Transaction {
 
+    /** Шаг transaction_seq: nextval = v отдаёт вызывающему блок id [v - 49, v]. */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Пул идентификаторов из последовательности: без него Hibernate не может пакетировать INSERT
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
-    private double amount;
+    // Сумма в сотых (см. Money); в JSON — десятичное поле amount
+    @Column(name = "amount_minor", columnDefinition = "bigint not null default 0")
+    @JsonProperty("amount")
+    @Money.MinorUnits
+    private long amountMinor;
+
+    // ISO 4217; по умолчанию — валюта цели пользователя
+    @Column(length = 3)
+    private String currency;
+
     private String category;
     private String description;
     private String type; // 'INCOME' or 'EXPENSE'
+
+    // Ключ секционирования: запись всегда заполняет дату (см. TransactionIngestService)
+    @Column(nullable = false)
     private LocalDate date;
+
+    // Ключ курсора истории вместе с id: без времени строка выпадала бы из keyset-сравнения
+    @Column(nullable = false)
     private LocalDateTime timestamp;
 
-    @ManyToOne
+    // dataVersion пользователя, в которой операция появилась (0 — записана до версионирования, V5)
+    @Column(nullable = false)
+    private long changeVersion;
+
+    // LAZY: в ответ пользователь не попадает, а чтения идут через проекции по user_id
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private User user;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.jcrpo.fieldcontrol.model;
 
+import com.jcrpo.fieldcontrol.security.UserCredentialsListener;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -7,6 +8,7 @@ import lombok.Data;
 @Entity
 // I have reverted the table name to 'users' to match your database schema.
 @Table(name = "users")
+@EntityListeners(UserCredentialsListener.class)
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -17,5 +19,9 @@ public class User {
 
     @Column(nullable = false)
     private String password;
+
+    // Повышается при смене пароля: подписанные токены с прежней версией отклоняются
+    @Column(columnDefinition = "integer not null default 0")
+    private int credentialVersion;
 }
 
@@ -0,0 +1,47 @@
+package com.jcrpo.fieldcontrol.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Накопительный баланс пользователя. Обновляется в той же транзакции, что и сохранение
+ * операции, поэтому дашборду не нужно пересчитывать всю историю.
+ */
+@Data
+@Entity
+@Table(name = "user_balance")
+public class UserBalance {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // Суммы в сотых (см. Money)
+    @Column(name = "income_minor", columnDefinition = "bigint not null default 0")
+    private long income;
+    @Column(name = "expense_minor", columnDefinition = "bigint not null default 0")
+    private long expense;
+    private long transactionCount;
+
+    // Итоги по текущей цели: обнуляются при установке новой цели
+    private Long goalId;
+    @Column(name = "goal_income_minor", columnDefinition = "bigint not null default 0")
+    private long goalIncome;
+    @Column(name = "goal_expense_minor", columnDefinition = "bigint not null default 0")
+    private long goalExpense;
+
+    // null — дневные итоги аналитики ещё не построены по старой истории
+    private Boolean rollupsReady;
+
+    // Растёт при каждом изменении цели или истории: ETag для /api/data и основа синхронизации
+    @Column(columnDefinition = "bigint not null default 0")
+    private long dataVersion;
+
+    // Версия последнего удаления истории: клиенту со старой версией нужна полная загрузка.
+    // Операции с меньшей версией ждут фоновой очистки и не видны при чтении
+    @Column(columnDefinition = "bigint not null default 0")
+    private long resetVersion;
+}
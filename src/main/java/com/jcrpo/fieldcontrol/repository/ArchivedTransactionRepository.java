@@ -0,0 +1,35 @@
+package com.jcrpo.fieldcontrol.repository;
+
+import com.jcrpo.fieldcontrol.dto.LedgerRow;
+import com.jcrpo.fieldcontrol.model.ArchivedTransaction;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.stream.Stream;
+
+import static com.jcrpo.fieldcontrol.repository.TransactionHistoryRepository.NOT_PURGED;
+
+/** Холодная история: то же, что TransactionRepository, для строк transaction_archive. */
+public interface ArchivedTransactionRepository extends JpaRepository<ArchivedTransaction, Long> {
+
+    /** Дополняет TransactionRepository.streamLedgerRows: реестр счёта строится по всей истории. */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.jcrpo.fieldcontrol.dto.LedgerRow(t.amountMinor, t.date, t.type, t.category, " +
+            "t.changeVersion) from ArchivedTransaction t where t.userId = :userId" + NOT_PURGED)
+    Stream<LedgerRow> streamLedgerRows(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "delete from transaction_archive where user_id = :userId", nativeQuery = true)
+    int deleteAllByUserId(@Param("userId") Long userId);
+
+    /** Порция фоновой очистки, как TransactionRepository.deleteBatch. */
+    @Modifying
+    @Query(value = "delete from transaction_archive where (id, date) in (select id, date from transaction_archive " +
+            "where user_id = :userId and change_version < :resetVersion limit :limit)", nativeQuery = true)
+    int deleteBatch(@Param("userId") Long userId, @Param("resetVersion") long resetVersion, @Param("limit") int limit);
+}
@@ -0,0 +1,14 @@
+package com.jcrpo.fieldcontrol.repository;
+
+import com.jcrpo.fieldcontrol.model.CurrencyRateRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface CurrencyRateRecordRepository extends JpaRepository<CurrencyRateRecord, Long> {
+
+    Optional<CurrencyRateRecord> findTopByOrderByUpdatedAtDesc();
+
+    Optional<CurrencyRateRecord> findTopByUpdatedAtLessThanOrderByUpdatedAtDesc(Instant before);
+}
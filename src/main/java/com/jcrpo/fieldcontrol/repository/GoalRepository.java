@@ -1,12 +1,40 @@
 package com.jcrpo.fieldcontrol.repository;
 
+import com.jcrpo.fieldcontrol.config.CacheConfig;
+import com.jcrpo.fieldcontrol.dto.GoalView;
 import com.jcrpo.fieldcontrol.model.Goal;
-import com.jcrpo.fieldcontrol.model.User;
+import com.jcrpo.fieldcontrol.model.Money;
+import com.jcrpo.fieldcontrol.model.RateSnapshot;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.Optional;
 
 public interface GoalRepository extends JpaRepository<Goal, Long> {
 
-    Optional<Goal> findByUser(User user);
-    void deleteByUser(User user);
-}
\ No newline at end of file
+    /** Текущая цель; кэш сбрасывают DataService.saveGoal и deleteByUserId. */
+    @Cacheable(cacheNames = CacheConfig.GOALS, key = "#p0")
+    Optional<GoalView> findFirstByUserIdOrderByIdDesc(Long userId);
+
+    /** Валюта учёта пользователя (в ней записываются операции без явной валюты): валюта цели или базовая. */
+    default String findCurrency(Long userId) {
+        return findFirstByUserIdOrderByIdDesc(userId)
+                .map(goal -> Money.currencyCode(goal.currency()))
+                .orElse(RateSnapshot.BASE);
+    }
+
+    /** Текущая цель, если она установлена в версиях (since, upTo]. */
+    @Query("select new com.jcrpo.fieldcontrol.dto.GoalView(g.id, g.name, g.amountMinor, g.date, g.currency) " +
+            "from Goal g where g.user.id = :userId and g.changeVersion > :since and g.changeVersion <= :upTo " +
+            "and g.id = (select max(c.id) from Goal c where c.user.id = :userId)")
+    Optional<GoalView> findChangedGoal(@Param("userId") Long userId, @Param("since") long since,
+                                       @Param("upTo") long upTo);
+
+    @CacheEvict(cacheNames = CacheConfig.GOALS, key = "#p0")
+    @Modifying
+    @Query("delete from Goal g where g.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
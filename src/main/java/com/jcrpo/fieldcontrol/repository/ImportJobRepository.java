@@ -0,0 +1,35 @@
+package com.jcrpo.fieldcontrol.repository;
+
+import com.jcrpo.fieldcontrol.model.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface ImportJobRepository extends JpaRepository<ImportJob, Long> {
+
+    Optional<ImportJob> findByIdAndUserId(Long id, Long userId);
+
+    /**
+     * Захват задачи для продолжения. RUNNING без обновлений дольше staleBefore считается
+     * брошенной (процесс остановился посреди загрузки).
+     */
+    @Transactional
+    @Modifying
+    @Query("update ImportJob j set j.status = com.jcrpo.fieldcontrol.model.ImportJob$Status.RUNNING, " +
+            "j.updatedAt = :now where j.id = :id " +
+            "and (j.status = com.jcrpo.fieldcontrol.model.ImportJob$Status.INTERRUPTED " +
+            "or (j.status = com.jcrpo.fieldcontrol.model.ImportJob$Status.RUNNING and j.updatedAt < :staleBefore))")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    // Вызывается внутри транзакции порции операций
+    @Modifying
+    @Query("update ImportJob j set j.rowsConsumed = :consumed, j.rowsAccepted = :accepted, " +
+            "j.rowsRejected = :rejected, j.updatedAt = :now where j.id = :id")
+    int recordProgress(@Param("id") Long id, @Param("consumed") long consumed, @Param("accepted") long accepted,
+                       @Param("rejected") long rejected, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,18 @@
+package com.jcrpo.fieldcontrol.repository;
+
+import com.jcrpo.fieldcontrol.model.JournalCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface JournalCheckpointRepository extends JpaRepository<JournalCheckpoint, String> {
+
+    /** 0 — контрольная точка уже дальше: журнал узла применяет другой процесс. */
+    @Modifying
+    @Query("update JournalCheckpoint c set c.appliedSeq = :seq, c.updatedAt = :now " +
+            "where c.name = :name and c.appliedSeq < :seq")
+    int advance(@Param("name") String name, @Param("seq") long seq, @Param("now") LocalDateTime now);
+}
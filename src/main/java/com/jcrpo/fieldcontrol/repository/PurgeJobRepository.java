@@ -0,0 +1,24 @@
+package com.jcrpo.fieldcontrol.repository;
+
+import com.jcrpo.fieldcontrol.model.PurgeJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface PurgeJobRepository extends JpaRepository<PurgeJob, Long> {
+
+    List<PurgeJob> findTop10ByStatusOrderByIdAsc(PurgeJob.Status status);
+
+    Optional<PurgeJob> findByIdAndUserId(Long id, Long userId);
+
+    /**
+     * Незавершённая задача, заблокированная до конца транзакции порции. Пусто, если её уже
+     * обрабатывает другой экземпляр (или она завершена): порции одной задачи не выполняются параллельно.
+     */
+    @Query(value = "select * from purge_job where id = :id and status = 'PENDING' for update skip locked",
+            nativeQuery = true)
+    Optional<PurgeJob> lockPending(@Param("id") Long id);
+}
@@ -0,0 +1,66 @@
+package com.jcrpo.fieldcontrol.repository;
+
+import com.jcrpo.fieldcontrol.model.SpendingRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface SpendingRollupRepository extends JpaRepository<SpendingRollup, Long> {
+
+    List<SpendingRollup> findByUserIdAndTypeAndDayBetweenOrderByDayAsc(Long userId, String type, LocalDate from, LocalDate to);
+
+    @Modifying
+    @Query(value = "insert into spending_rollup (user_id, day, type, category, total_minor, tx_count) " +
+            "values (:userId, :day, :type, :category, :amount, :count) " +
+            "on conflict (user_id, day, type, category) do update set " +
+            "total_minor = spending_rollup.total_minor + excluded.total_minor, tx_count = spending_rollup.tx_count + excluded.tx_count",
+            nativeQuery = true)
+    void add(@Param("userId") Long userId, @Param("day") LocalDate day, @Param("type") String type,
+             @Param("category") String category, @Param("amount") long amount, @Param("count") long count);
+
+    @Modifying
+    @Query("delete from SpendingRollup r where r.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("delete from SpendingRollup r where r.userId = :userId and r.day >= :since")
+    int deleteByUserIdSince(@Param("userId") Long userId, @Param("since") LocalDate since);
+
+    /**
+     * Пересчёт итогов пользователя из истории начиная с since (скрытые к очистке строки не учитываются).
+     * Холодная история участвует, но условие по дате отсекает её секции, если since внутри горизонта.
+     */
+    @Modifying
+    @Query(value = "insert into spending_rollup (user_id, day, type, category, total_minor, tx_count) " +
+            "select t.user_id, t.date, t.type, coalesce(t.category, ''), sum(t.amount_minor), count(*) from (" +
+            "select user_id, date, type, category, amount_minor, change_version from transaction " +
+            "where user_id = :userId and date >= :since union all " +
+            "select user_id, date, type, category, amount_minor, change_version from transaction_archive " +
+            "where user_id = :userId and date >= :since) t " +
+            "where t.type is not null " +
+            "and t.change_version >= coalesce((select b.reset_version from user_balance b where b.user_id = :userId), 0) " +
+            "group by t.user_id, t.date, t.type, coalesce(t.category, '')", nativeQuery = true)
+    int rebuildSince(@Param("userId") Long userId, @Param("since") LocalDate since);
+
+    /**
+     * Те же дневные итоги, посчитанные прямо по истории за [from, to], — пока итоги пользователя
+     * не построены. Диапазон дат ограничивает и секции, и индекс (user_id, date).
+     * Строка: день, категория, сумма, число операций.
+     */
+    @Query(value = "select t.date, coalesce(t.category, ''), sum(t.amount_minor), count(*) from (" +
+            "select date, category, amount_minor, change_version from transaction " +
+            "where user_id = :userId and type = :type and date between :from and :to union all " +
+            "select date, category, amount_minor, change_version from transaction_archive " +
+            "where user_id = :userId and type = :type and date between :from and :to) t " +
+            "where t.change_version >= coalesce((select b.reset_version from user_balance b where b.user_id = :userId), 0) " +
+            "group by t.date, coalesce(t.category, '') order by t.date", nativeQuery = true)
+    List<Object[]> aggregateHistory(@Param("userId") Long userId, @Param("type") String type,
+                                    @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query(value = "select distinct t.user_id from transaction t where t.date >= :since", nativeQuery = true)
+    List<Long> findActiveUserIds(@Param("since") LocalDate since);
+}
@@ -0,0 +1,27 @@
+package com.jcrpo.fieldcontrol.repository;
+
+import com.jcrpo.fieldcontrol.dto.HistoryCursor;
+import com.jcrpo.fieldcontrol.dto.TransactionFilter;
+import com.jcrpo.fieldcontrol.dto.TransactionView;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Чтение истории по индексу (user_id, timestamp, id) без загрузки всей таблицы.
+ * С TransactionFilter.includeArchived к живым секциям добавляется transaction_archive.
+ */
+public interface TransactionHistoryRepository {
+
+    /**
+     * Условие видимости: скрывает строки, записанные до последнего удаления истории и ожидающие
+     * фоновой очистки (параметр :userId). Версии выдаются под блокировкой строки баланса, поэтому
+     * операция, зафиксированная позже удаления, всегда получает версию не меньше resetVersion.
+     */
+    String NOT_PURGED = " and t.changeVersion >= coalesce((select b.resetVersion from UserBalance b where b.userId = :userId), 0)";
+
+    List<TransactionView> findHistoryPage(Long userId, TransactionFilter filter, HistoryCursor after, int limit);
+
+    /** Курсорное чтение; должно вызываться внутри транзакции и закрываться после использования. */
+    Stream<TransactionView> streamHistory(Long userId, TransactionFilter filter);
+}
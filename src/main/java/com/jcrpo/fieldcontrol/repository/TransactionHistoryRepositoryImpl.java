@@ -0,0 +1,144 @@
+package com.jcrpo.fieldcontrol.repository;
+
+import com.jcrpo.fieldcontrol.dto.HistoryCursor;
+import com.jcrpo.fieldcontrol.dto.TransactionFilter;
+import com.jcrpo.fieldcontrol.dto.TransactionView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+class TransactionHistoryRepositoryImpl implements TransactionHistoryRepository {
+
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private static final String LIVE = "from Transaction t where t.user.id = :userId";
+    private static final String ARCHIVE = "from ArchivedTransaction t where t.userId = :userId";
+
+    // Порядок выдачи: order by t.timestamp desc, t.id desc (timestamp not null с V7)
+    private static final Comparator<TransactionView> NEWEST_FIRST = Comparator
+            .comparing(TransactionView::timestamp)
+            .thenComparing(TransactionView::id)
+            .reversed();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TransactionView> findHistoryPage(Long userId, TransactionFilter filter, HistoryCursor after, int limit) {
+        List<TransactionView> live = buildQuery(LIVE, userId, filter, after)
+                .setMaxResults(limit)
+                .getResultList();
+        if (!filter.includeArchived()) {
+            return live;
+        }
+        // Курсор одинаково ограничивает обе таблицы: страница — первые limit строк слияния
+        List<TransactionView> archived = buildQuery(ARCHIVE, userId, filter, after)
+                .setMaxResults(limit)
+                .getResultList();
+        List<TransactionView> page = new ArrayList<>(live.size() + archived.size());
+        page.addAll(live);
+        page.addAll(archived);
+        page.sort(NEWEST_FIRST);
+        return page.size() > limit ? page.subList(0, limit) : page;
+    }
+
+    @Override
+    public Stream<TransactionView> streamHistory(Long userId, TransactionFilter filter) {
+        // DTO не попадают в контекст персистентности, поэтому память не растёт с длиной потока
+        Stream<TransactionView> live = buildQuery(LIVE, userId, filter, null)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .getResultStream();
+        if (!filter.includeArchived()) {
+            return live;
+        }
+        Stream<TransactionView> archived = buildQuery(ARCHIVE, userId, filter, null)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .getResultStream();
+        return merge(live, archived);
+    }
+
+    private TypedQuery<TransactionView> buildQuery(String source, Long userId, TransactionFilter filter,
+                                                   HistoryCursor after) {
+        // t.user.id читается из внешнего ключа, join с users не нужен.
+        // Условия по дате отсекают лишние месячные секции ещё до чтения индексов; без from/to
+        // (и курсор тут не помогает: он по timestamp, а секции по date) читаются все живые секции
+        StringBuilder jpql = new StringBuilder("select new com.jcrpo.fieldcontrol.dto.TransactionView(" +
+                "t.id, t.amountMinor, t.currency, t.category, t.description, t.type, t.date, t.timestamp) " +
+                source + NOT_PURGED);
+        if (filter.type() != null) {
+            jpql.append(" and t.type = :type");
+        }
+        if (filter.from() != null) {
+            jpql.append(" and t.date >= :from");
+        }
+        if (filter.to() != null) {
+            jpql.append(" and t.date <= :to");
+        }
+        if (after != null) {
+            jpql.append(" and (t.timestamp < :ts or (t.timestamp = :ts and t.id < :id))");
+        }
+        jpql.append(" order by t.timestamp desc, t.id desc");
+
+        TypedQuery<TransactionView> query = entityManager.createQuery(jpql.toString(), TransactionView.class)
+                .setParameter("userId", userId);
+        if (filter.type() != null) {
+            query.setParameter("type", filter.type());
+        }
+        if (filter.from() != null) {
+            query.setParameter("from", filter.from());
+        }
+        if (filter.to() != null) {
+            query.setParameter("to", filter.to());
+        }
+        if (after != null) {
+            query.setParameter("ts", after.timestamp());
+            query.setParameter("id", after.id());
+        }
+        return query;
+    }
+
+    /** Слияние двух уже упорядоченных курсоров без буферизации; закрытие закрывает оба. */
+    private static Stream<TransactionView> merge(Stream<TransactionView> first, Stream<TransactionView> second) {
+        Iterator<TransactionView> a = first.iterator();
+        Iterator<TransactionView> b = second.iterator();
+        Iterator<TransactionView> merged = new Iterator<>() {
+            private TransactionView nextA = a.hasNext() ? a.next() : null;
+            private TransactionView nextB = b.hasNext() ? b.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return nextA != null || nextB != null;
+            }
+
+            @Override
+            public TransactionView next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TransactionView result;
+                if (nextB == null || (nextA != null && NEWEST_FIRST.compare(nextA, nextB) <= 0)) {
+                    result = nextA;
+                    nextA = a.hasNext() ? a.next() : null;
+                } else {
+                    result = nextB;
+                    nextB = b.hasNext() ? b.next() : null;
+                }
+                return result;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false)
+                .onClose(first::close)
+                .onClose(second::close);
+    }
+}
@@ -1,16 +1,64 @@
 package com.jcrpo.fieldcontrol.repository;
 
+import com.jcrpo.fieldcontrol.dto.LedgerRow;
+import com.jcrpo.fieldcontrol.dto.TransactionView;
 import com.jcrpo.fieldcontrol.model.Transaction;
-import com.jcrpo.fieldcontrol.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+/**
+ * Запросы к живым секциям transaction. Секции отсекаются только условием по date: выборки
+ * за день читают одну секцию. Запросы без даты — streamChanges, streamLedgerRows,
+ * deleteAllByUserId, deleteBatch и страницы истории без from/to — читают каждую живую секцию
+ * и секцию по умолчанию. Число таких секций ограничено горизонтом hot-months плюс
+ * create-ahead-months (TransactionPartitionService), а не длиной истории, но отсечения нет.
+ * Границу по дате здесь не вывести: версия изменения не связана с датой (выписки загружают
+ * прошлые месяцы), а timestamp операции задаётся независимо от date.
+ */
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionHistoryRepository {
 
-    List<Transaction> findByUser(User user);
-    List<Transaction> findByUserAndDate(User user, LocalDate date);
-    List<Transaction> findByTypeAndUser(String type, User user);
+    @Query("select new com.jcrpo.fieldcontrol.dto.TransactionView(t.id, t.amountMinor, t.currency, t.category, " +
+            "t.description, t.type, t.date, t.timestamp) from Transaction t where t.user.id = :userId and t.date = :date" + NOT_PURGED)
+    List<TransactionView> findByUserIdAndDate(@Param("userId") Long userId, @Param("date") LocalDate date);
 
-    void deleteAllByUser(User user);
-}
\ No newline at end of file
+    /** Операции, добавленные в версиях (since, upTo], в порядке появления. */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.jcrpo.fieldcontrol.dto.TransactionView(t.id, t.amountMinor, t.currency, t.category, " +
+            "t.description, t.type, t.date, t.timestamp) from Transaction t where t.user.id = :userId " +
+            "and t.changeVersion > :since and t.changeVersion <= :upTo" + NOT_PURGED +
+            " order by t.changeVersion, t.id")
+    Stream<TransactionView> streamChanges(@Param("userId") Long userId, @Param("since") long since,
+                                          @Param("upTo") long upTo);
+
+    @Query("select coalesce(sum(t.amountMinor), 0) from Transaction t where t.user.id = :userId " +
+            "and t.date = :date and t.type = 'EXPENSE'" + NOT_PURGED)
+    long sumExpensesByUserIdAndDate(@Param("userId") Long userId, @Param("date") LocalDate date);
+
+    /** Все видимые операции пользователя в разрезе, нужном AccountLedger. */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.jcrpo.fieldcontrol.dto.LedgerRow(t.amountMinor, t.date, t.type, t.category, " +
+            "t.changeVersion) from Transaction t where t.user.id = :userId" + NOT_PURGED)
+    Stream<LedgerRow> streamLedgerRows(@Param("userId") Long userId);
+
+    /** Один DELETE по индексу вместо загрузки и удаления каждой сущности. */
+    @Modifying
+    @Query("delete from Transaction t where t.user.id = :userId")
+    int deleteAllByUserId(@Param("userId") Long userId);
+
+    /**
+     * Удаляет не более limit строк пользователя с версией меньше resetVersion (порция фоновой
+     * очистки). Ключ секции — (id, date), поэтому строки выбираются парами.
+     */
+    @Modifying
+    @Query(value = "delete from transaction where (id, date) in (select id, date from transaction " +
+            "where user_id = :userId and change_version < :resetVersion limit :limit)", nativeQuery = true)
+    int deleteBatch(@Param("userId") Long userId, @Param("resetVersion") long resetVersion, @Param("limit") int limit);
+}
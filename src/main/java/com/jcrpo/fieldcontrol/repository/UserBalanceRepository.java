@@ -0,0 +1,71 @@
+package com.jcrpo.fieldcontrol.repository;
+
+import com.jcrpo.fieldcontrol.dto.DataVersion;
+import com.jcrpo.fieldcontrol.model.UserBalance;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface UserBalanceRepository extends JpaRepository<UserBalance, Long> {
+
+    @Modifying
+    @Query("update UserBalance b set b.income = b.income + :income, b.expense = b.expense + :expense, " +
+            "b.goalIncome = b.goalIncome + :income, b.goalExpense = b.goalExpense + :expense, " +
+            "b.transactionCount = b.transactionCount + :count where b.userId = :userId")
+    int applyDelta(@Param("userId") Long userId, @Param("income") long income,
+                   @Param("expense") long expense, @Param("count") long count);
+
+    @Modifying
+    @Query("update UserBalance b set b.goalId = :goalId, b.goalIncome = 0, b.goalExpense = 0 " +
+            "where b.userId = :userId and (b.goalId is null or b.goalId <> :goalId)")
+    int startGoal(@Param("userId") Long userId, @Param("goalId") Long goalId);
+
+    // Удаление истории — тоже новая версия; resetVersion отмечает, что дельта до неё невозможна
+    @Modifying
+    @Query("update UserBalance b set b.income = 0, b.expense = 0, b.transactionCount = 0, " +
+            "b.goalId = null, b.goalIncome = 0, b.goalExpense = 0, " +
+            "b.resetVersion = b.dataVersion + 1, b.dataVersion = b.dataVersion + 1 where b.userId = :userId")
+    int reset(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("update UserBalance b set b.dataVersion = b.dataVersion + 1 where b.userId = :userId")
+    int bumpVersion(@Param("userId") Long userId);
+
+    @Query("select new com.jcrpo.fieldcontrol.dto.DataVersion(b.dataVersion, b.resetVersion) " +
+            "from UserBalance b where b.userId = :userId")
+    Optional<DataVersion> findVersion(@Param("userId") Long userId);
+
+    @Query("select b.userId from UserBalance b where b.rollupsReady is null or b.rollupsReady = false " +
+            "order by b.userId")
+    List<Long> findWithoutRollups(Limit limit);
+
+    /**
+     * Блокирует строку баланса на время построения итогов. Пусто, если итоги уже готовы или строку
+     * держит запись операции либо другой экземпляр, — пользователь достанется следующему проходу.
+     */
+    @Query(value = "select b.user_id from user_balance b where b.user_id = :userId " +
+            "and b.rollups_ready is not true for update skip locked", nativeQuery = true)
+    List<Long> lockWithoutRollups(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("update UserBalance b set b.rollupsReady = true where b.userId = :userId")
+    int markRollupsReady(@Param("userId") Long userId);
+
+    /** Первичное заполнение баланса по существующей истории, включая холодную (один раз на пользователя). */
+    @Modifying
+    @Query(value = "insert into user_balance (user_id, income_minor, expense_minor, transaction_count, goal_id, " +
+            "goal_income_minor, goal_expense_minor) " +
+            "select :userId, agg.income, agg.expense, agg.cnt, " +
+            "(select g.id from goal g where g.user_id = :userId order by g.id desc limit 1), agg.income, agg.expense " +
+            "from (select coalesce(sum(case when t.type = 'INCOME' then t.amount_minor else 0 end), 0) as income, " +
+            "coalesce(sum(case when t.type = 'INCOME' then 0 else t.amount_minor end), 0) as expense, " +
+            "count(t.id) as cnt from (select type, amount_minor, id from transaction where user_id = :userId " +
+            "union all select type, amount_minor, id from transaction_archive where user_id = :userId) t) agg " +
+            "on conflict (user_id) do nothing", nativeQuery = true)
+    int initializeFromHistory(@Param("userId") Long userId);
+}
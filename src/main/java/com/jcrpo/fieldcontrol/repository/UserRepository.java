@@ -1,9 +1,35 @@
 package com.jcrpo.fieldcontrol.repository;
 
+import com.jcrpo.fieldcontrol.config.CacheConfig;
+import com.jcrpo.fieldcontrol.dto.UserCredentials;
 import com.jcrpo.fieldcontrol.model.User;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
-}
\ No newline at end of file
+
+    // Сбрасывается UserCredentialsListener при регистрации, смене пароля и удалении
+    @Cacheable(cacheNames = CacheConfig.USERS, key = "#p0")
+    @Query("select new com.jcrpo.fieldcontrol.dto.UserCredentials(u.id, u.username, u.password) " +
+            "from User u where u.username = :username")
+    Optional<UserCredentials> findCredentialsByUsername(@Param("username") String username);
+
+    @Cacheable(cacheNames = CacheConfig.USER_IDS, key = "#p0")
+    @Query("select u.id from User u where u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    /** Пересчёт хэша при входе; 0 — хэш уже другой (пароль сменили параллельно). */
+    @Transactional
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfig.USERS, key = "#p0")
+    @Query("update User u set u.password = :newHash where u.username = :username and u.password = :oldHash")
+    int rehashPassword(@Param("username") String username, @Param("oldHash") String oldHash,
+                       @Param("newHash") String newHash);
+}
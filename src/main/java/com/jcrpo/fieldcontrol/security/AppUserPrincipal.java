@@ -0,0 +1,59 @@
+package com.jcrpo.fieldcontrol.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Аутентифицированный пользователь вместе с его id, чтобы контроллерам
+ * не приходилось повторно искать запись в таблице users.
+ */
+@Getter
+public class AppUserPrincipal implements UserDetails {
+
+    private static final List<GrantedAuthority> USER_AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+    private final Long userId;
+    private final String username;
+    private final String password;
+
+    public AppUserPrincipal(Long userId, String username, String password) {
+        this.userId = userId;
+        this.username = username;
+        this.password = password;
+    }
+
+    /** Копия без хэша пароля — именно она хранится в кэше, сессии и токенах. */
+    public AppUserPrincipal withoutPassword() {
+        return password == null ? this : new AppUserPrincipal(userId, username, null);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return USER_AUTHORITIES;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
@@ -0,0 +1,97 @@
+package com.jcrpo.fieldcontrol.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выполняет хеширование и проверку паролей в отдельном пуле фиксированного размера с
+ * ограниченной очередью. Волна входов занимает не больше threads ядер, остальные запросы
+ * (/api/data) обслуживаются как обычно; когда очередь полна, попытка сразу отклоняется
+ * {@link LoginThrottledException} (429) вместо ожидания.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+    private final Timer waitTime;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueSize, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+            Thread thread = new Thread(r, "password-hash-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.rejected = Counter.builder("auth.login.throttled").description("Password checks rejected before hashing")
+                .tag("reason", "pool").register(meterRegistry);
+        this.waitTime = Timer.builder("auth.password.hash.wait")
+                .description("Time a password check waited for the hashing pool").publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hash.queue", () -> executor.getQueue().size())
+                .description("Password checks waiting for the hashing pool").register(meterRegistry);
+        Gauge.builder("auth.password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password checks being hashed").register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return call(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return call(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /** Дёшево (разбор префикса хэша), выполняется в вызывающем потоке. */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T call(Callable<T> task) {
+        long submitted = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                waitTime.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                return task.call();
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new LoginThrottledException("Too many concurrent logins, retry later", 1);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new LoginThrottledException("Interrupted while waiting for the password check", 1);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.jcrpo.fieldcontrol.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+/**
+ * Проверяет логин/пароль через {@link PrincipalCache}, а при промахе — через делегата
+ * (DaoAuthenticationProvider с BCrypt) и запоминает успешный результат. До BCrypt
+ * доходят только попытки в пределах {@link LoginRateLimiter}.
+ */
+@RequiredArgsConstructor
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final PrincipalCache principalCache;
+    private final LoginRateLimiter rateLimiter;
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+        String rawPassword = credentials.toString();
+
+        AppUserPrincipal cached = principalCache.lookup(username, rawPassword);
+        if (cached != null) {
+            return authenticated(cached, authentication);
+        }
+
+        String address = authentication.getDetails() instanceof WebAuthenticationDetails details
+                ? details.getRemoteAddress() : null;
+        rateLimiter.checkLogin(address, username);
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.getPrincipal() instanceof AppUserPrincipal principal) {
+            principalCache.store(principal, rawPassword);
+            return authenticated(principal.withoutPassword(), authentication);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    private static Authentication authenticated(AppUserPrincipal principal, Authentication request) {
+        UsernamePasswordAuthenticationToken token =
+                UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities());
+        token.setDetails(request.getDetails());
+        return token;
+    }
+}
@@ -0,0 +1,109 @@
+package com.jcrpo.fieldcontrol.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Лимиты попыток, доходящих до BCrypt: отдельно на адрес клиента и на логин (token bucket,
+ * пополнение равномерно в течение минуты). Вход из кэша учётных данных лимит не тратит.
+ * Корзины хранятся в ограниченном кэше (Caffeine), поэтому перебор адресов не растит память.
+ */
+@Component
+public class LoginRateLimiter {
+
+    private static final Duration WINDOW = Duration.ofMinutes(1);
+
+    private final Cache<String, Bucket> byAddress;
+    private final Cache<String, Bucket> byUsername;
+    private final int perAddress;
+    private final int perUsername;
+    private final Counter addressRejected;
+    private final Counter usernameRejected;
+
+    public LoginRateLimiter(@Value("${app.security.login-rate.per-address:60}") int perAddress,
+                            @Value("${app.security.login-rate.per-username:10}") int perUsername,
+                            @Value("${app.security.login-rate.max-keys:100000}") int maxKeys,
+                            MeterRegistry meterRegistry) {
+        this.perAddress = perAddress;
+        this.perUsername = perUsername;
+        this.byAddress = buckets(maxKeys);
+        this.byUsername = buckets(maxKeys);
+        CaffeineCacheMetrics.monitor(meterRegistry, byAddress, "loginBuckets.address");
+        CaffeineCacheMetrics.monitor(meterRegistry, byUsername, "loginBuckets.username");
+        this.addressRejected = throttledCounter(meterRegistry, "address");
+        this.usernameRejected = throttledCounter(meterRegistry, "username");
+    }
+
+    /** Попытка входа; address может быть null (адрес неизвестен). */
+    public void checkLogin(String address, String username) {
+        check(byAddress, address, perAddress, addressRejected);
+        check(byUsername, username.toLowerCase(), perUsername, usernameRejected);
+    }
+
+    /** Регистрация тоже стоит одного хеширования и ограничивается по адресу. */
+    public void checkRegistration(String address) {
+        check(byAddress, address, perAddress, addressRejected);
+    }
+
+    private void check(Cache<String, Bucket> buckets, String key, int capacity, Counter rejected) {
+        if (key == null || capacity <= 0) {
+            return;
+        }
+        // Одновременные первые попытки по ключу получают одну корзину
+        Bucket bucket = buckets.get(key, k -> new Bucket(capacity));
+        long retryAfter = bucket.tryTake();
+        if (retryAfter > 0) {
+            rejected.increment();
+            throw new LoginThrottledException("Too many login attempts, retry later", retryAfter);
+        }
+    }
+
+    /**
+     * Корзина, не тронутая окно, снова полна — хранить её дольше незачем. Срок считается
+     * от последнего обращения: активная корзина не вытесняется посреди окна.
+     */
+    private static Cache<String, Bucket> buckets(int maxKeys) {
+        return Caffeine.newBuilder()
+                .expireAfterAccess(WINDOW)
+                .maximumSize(maxKeys)
+                .recordStats()
+                .build();
+    }
+
+    private static Counter throttledCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("auth.login.throttled").description("Password checks rejected before hashing")
+                .tag("reason", reason).register(meterRegistry);
+    }
+
+    private static final class Bucket {
+        private final int capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        Bucket(int capacity) {
+            this.capacity = capacity;
+            this.tokensPerNano = (double) capacity / WINDOW.toNanos();
+            this.tokens = capacity;
+        }
+
+        /** 0 — попытка разрешена, иначе через сколько секунд появится следующая. */
+        synchronized long tryTake() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano / 1_000_000_000));
+        }
+    }
+}
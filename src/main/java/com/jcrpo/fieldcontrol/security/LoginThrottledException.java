@@ -0,0 +1,21 @@
+package com.jcrpo.fieldcontrol.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Проверка пароля не выполнялась: превышен лимит попыток или пул хеширования занят.
+ * Ответ — 429 с Retry-After, а не 401: пароль мог быть верным.
+ */
+public class LoginThrottledException extends AuthenticationServiceException {
+
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
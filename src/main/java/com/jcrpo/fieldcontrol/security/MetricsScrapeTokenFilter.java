@@ -0,0 +1,45 @@
+package com.jcrpo.fieldcontrol.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Аутентификация сборщика метрик по заголовку X-Metrics-Token. Пустой app.metrics.scrape-token
+ * не совпадает ни с чем: пока токен не задан, /actuator/prometheus отвечает 401.
+ */
+public class MetricsScrapeTokenFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Metrics-Token";
+    public static final String AUTHORITY = "METRICS_SCRAPE";
+
+    private final byte[] token;
+
+    public MetricsScrapeTokenFilter(String token) {
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String presented = request.getHeader(HEADER);
+        if (token.length > 0 && presented != null
+                && MessageDigest.isEqual(token, presented.getBytes(StandardCharsets.UTF_8))) {
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                    "metrics-scraper", null, AuthorityUtils.createAuthorityList(AUTHORITY)));
+            SecurityContextHolder.setContext(context);
+        }
+        chain.doFilter(request, response);
+    }
+}
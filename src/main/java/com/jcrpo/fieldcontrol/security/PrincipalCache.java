@@ -0,0 +1,73 @@
+package com.jcrpo.fieldcontrol.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+
+/**
+ * Кэш успешно проверенных учётных данных. Вместо пароля хранится HMAC от него на
+ * случайном ключе процесса, поэтому повторная проверка стоит микросекунды, а не BCrypt.
+ */
+@Component
+public class PrincipalCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache<String, CachedCredential> cache;
+    private final SecretKeySpec digestKey;
+
+    public PrincipalCache(@Value("${app.security.principal-cache.ttl:PT5M}") Duration ttl,
+                          @Value("${app.security.principal-cache.max-size:10000}") int maxSize,
+                          MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "principals");
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.digestKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    /** Возвращает принципала, если пара логин/пароль уже проверялась и не устарела. */
+    public AppUserPrincipal lookup(String username, String rawPassword) {
+        CachedCredential cached = cache.getIfPresent(username);
+        if (cached == null || !MessageDigest.isEqual(cached.digest(), digest(rawPassword))) {
+            return null;
+        }
+        return cached.principal();
+    }
+
+    public void store(AppUserPrincipal principal, String rawPassword) {
+        cache.put(principal.getUsername(), new CachedCredential(principal.withoutPassword(), digest(rawPassword)));
+    }
+
+    public void evict(String username) {
+        cache.invalidate(username);
+    }
+
+    private byte[] digest(String rawPassword) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(digestKey);
+            return mac.doFinal(rawPassword.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC is not available", e);
+        }
+    }
+
+    record CachedCredential(AppUserPrincipal principal, byte[] digest) {
+    }
+}
@@ -1,26 +1,39 @@
 package com.jcrpo.fieldcontrol.security;
 
 import com.jcrpo.fieldcontrol.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
-import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.www.BasicAuthenticationEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
-import java.util.Collections;
 
 @Configuration
 @EnableWebSecurity
@@ -28,6 +41,41 @@ import java.util.Collections;
 public class SecurityConfig {
 
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
+    private final TokenService tokenService;
+    private final MeterRegistry meterRegistry;
+    private final LoginRateLimiter loginRateLimiter;
+
+    @Value("${app.security.bcrypt.strength:10}")
+    private int bcryptStrength;
+    // 0 — половина ядер: вторая половина остаётся запросам к данным
+    @Value("${app.security.hashing.threads:0}")
+    private int hashingThreads;
+    @Value("${app.security.hashing.queue-size:64}")
+    private int hashingQueueSize;
+    @Value("${app.metrics.scrape-token:}")
+    private String metricsScrapeToken;
+
+    /**
+     * Эндпоинты Actuator — отдельная цепочка без сессий и входа. health открыт для проб,
+     * остальное (prometheus) — только с X-Metrics-Token; без заданного токена закрыто.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http) throws Exception {
+        http
+                .securityMatcher(EndpointRequest.toAnyEndpoint())
+                .csrf(AbstractHttpConfigurer::disable)
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(authorize -> authorize
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
+                        .anyRequest().hasAuthority(MetricsScrapeTokenFilter.AUTHORITY)
+                )
+                .addFilterBefore(new MetricsScrapeTokenFilter(metricsScrapeToken), BasicAuthenticationFilter.class)
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)));
+        return http.build();
+    }
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -38,6 +86,8 @@ public class SecurityConfig {
                         .sessionCreationPolicy(SessionCreationPolicy.ALWAYS) // Изменено на ALWAYS
                 )
                 .authorizeHttpRequests(authorize -> authorize
+                        // Повторный вход асинхронного запроса (SSE, стриминг) уже авторизован
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
                                 "/api/auth/**",
                                 "/api/currency/**",
@@ -52,12 +102,16 @@ public class SecurityConfig {
                         ).permitAll()
                         .anyRequest().authenticated()
                 )
-                .httpBasic(Customizer.withDefaults())
+                // Bearer-токены проверяются до Basic, чтобы не доходить до BCrypt
+                .addFilterBefore(new BearerTokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class)
+                // Попытка, отклонённая лимитом или занятым пулом хеширования, — 429, а не 401
+                .httpBasic(basic -> basic.authenticationEntryPoint(
+                        new ThrottlingAuthenticationEntryPoint(basicAuthenticationEntryPoint())))
                 .formLogin(form -> form // Включена форма логина
                         .loginPage("/login.html")
                         .loginProcessingUrl("/api/auth/login")
                         .defaultSuccessUrl("/index.html", true)
-                        .failureUrl("/login.html?error=true")
+                        .failureHandler(loginFailureHandler())
                         .permitAll()
                 )
                 .logout(logout -> logout
@@ -70,28 +124,60 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * BCrypt в отдельном ограниченном пуле. Хэши со стоимостью ниже app.security.bcrypt.strength
+     * пересчитываются при ближайшем успешном входе (см. {@link #rehashPassword}).
+     */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        int threads = hashingThreads > 0 ? hashingThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(
+                new TimedPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength), meterRegistry),
+                threads, hashingQueueSize, meterRegistry);
     }
 
     @Bean
     public UserDetailsService userDetailsService() {
-        return username -> userRepository.findByUsername(username)
-                .map(user -> org.springframework.security.core.userdetails.User
-                        .withUsername(user.getUsername())
-                        .password(user.getPassword())
-                        .authorities(Collections.singletonList(() -> "ROLE_USER"))
-                        .build())
+        return username -> userRepository.findCredentialsByUsername(username)
+                .map(user -> new AppUserPrincipal(user.id(), user.username(), user.passwordHash()))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
     }
 
     @Bean
-    public DaoAuthenticationProvider authenticationProvider() {
+    public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService());
         authProvider.setPasswordEncoder(passwordEncoder());
-        return authProvider;
+        authProvider.setUserDetailsPasswordService(this::rehashPassword);
+        // BCrypt и поиск пользователя выполняются только при промахе кэша
+        return new CachingAuthenticationProvider(authProvider, principalCache, loginRateLimiter);
+    }
+
+    /**
+     * Новый хэш того же пароля. Запрос в обход сущности: это не смена пароля, поэтому
+     * выданные токены и кэш учётных данных (UserCredentialsListener) остаются в силе.
+     */
+    private UserDetails rehashPassword(UserDetails user, String newPassword) {
+        if (userRepository.rehashPassword(user.getUsername(), user.getPassword(), newPassword) == 0) {
+            return user; // пароль успели сменить — оставляем как есть
+        }
+        Long userId = user instanceof AppUserPrincipal principal ? principal.getUserId() : null;
+        return new AppUserPrincipal(userId, user.getUsername(), newPassword);
+    }
+
+    private static BasicAuthenticationEntryPoint basicAuthenticationEntryPoint() {
+        BasicAuthenticationEntryPoint entryPoint = new BasicAuthenticationEntryPoint();
+        entryPoint.setRealmName("Realm");
+        return entryPoint;
+    }
+
+    private static AuthenticationFailureHandler loginFailureHandler() {
+        AuthenticationFailureHandler failure = new SimpleUrlAuthenticationFailureHandler("/login.html?error=true");
+        return (request, response, exception) -> {
+            if (!ThrottlingAuthenticationEntryPoint.sendIfThrottled(response, exception)) {
+                failure.onAuthenticationFailure(request, response, exception);
+            }
+        };
     }
 
     @Bean
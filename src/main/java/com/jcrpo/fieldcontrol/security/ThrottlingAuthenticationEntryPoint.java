@@ -0,0 +1,36 @@
+package com.jcrpo.fieldcontrol.security;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.AuthenticationEntryPoint;
+
+import java.io.IOException;
+
+/** Отклонённая до проверки пароля попытка — 429 с Retry-After; остальное решает делегат (401). */
+@RequiredArgsConstructor
+public class ThrottlingAuthenticationEntryPoint implements AuthenticationEntryPoint {
+
+    private final AuthenticationEntryPoint delegate;
+
+    @Override
+    public void commence(HttpServletRequest request, HttpServletResponse response,
+                         AuthenticationException authException) throws IOException, ServletException {
+        if (!sendIfThrottled(response, authException)) {
+            delegate.commence(request, response, authException);
+        }
+    }
+
+    static boolean sendIfThrottled(HttpServletResponse response, AuthenticationException e) throws IOException {
+        if (!(e instanceof LoginThrottledException throttled)) {
+            return false;
+        }
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(throttled.getRetryAfterSeconds()));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), throttled.getMessage());
+        return true;
+    }
+}
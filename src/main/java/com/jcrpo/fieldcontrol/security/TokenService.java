@@ -0,0 +1,152 @@
+package com.jcrpo.fieldcontrol.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Подписанные (HMAC-SHA256) токены доступа для API-клиентов: проверка подписи заменяет
+ * BCrypt и обращение к БД на каждом запросе. Режим включается app.security.token.enabled.
+ * Формат: base64url(userId:issuedAt:expiresAt:credentialVersion:username).base64url(подпись).
+ * <p>
+ * Токен действует, пока users.credential_version совпадает с версией в нём: смена пароля
+ * повышает версию, и старые токены отклоняются на всех экземплярах и после перезапуска.
+ * Версия читается по первичному ключу и держится в памяти version-cache-ttl; на этом
+ * экземпляре смена пароля сбрасывает её сразу, на остальных — не позже чем через TTL.
+ */
+@Component
+public class TokenService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final int VERSION_CACHE_SIZE = 10_000;
+
+    private final boolean enabled;
+    private final Duration ttl;
+    private final SecretKeySpec signingKey;
+    // JdbcTemplate, а не UserRepository: сервис нужен слушателю сущности User
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<Long, Integer> credentialVersions;
+
+    public TokenService(JdbcTemplate jdbcTemplate,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.security.token.enabled:false}") boolean enabled,
+                        @Value("${app.security.token.ttl:PT12H}") Duration ttl,
+                        @Value("${app.security.token.secret:}") String secret,
+                        @Value("${app.security.token.version-cache-ttl:PT30S}") Duration versionCacheTtl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.credentialVersions = Caffeine.newBuilder()
+                .expireAfterWrite(versionCacheTtl)
+                .maximumSize(VERSION_CACHE_SIZE)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, credentialVersions, "credentialVersions");
+        this.enabled = enabled;
+        this.ttl = ttl;
+        byte[] key;
+        if (secret == null || secret.isBlank()) {
+            // Без заданного секрета токены действуют до перезапуска процесса
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        } else {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.signingKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public IssuedToken issue(AppUserPrincipal principal) {
+        Integer credentialVersion = credentialVersion(principal.getUserId());
+        if (credentialVersion == null) {
+            throw new IllegalStateException("User " + principal.getUserId() + " no longer exists");
+        }
+        Instant issuedAt = Instant.now();
+        Instant expiresAt = issuedAt.plus(ttl);
+        String payload = principal.getUserId() + ":" + issuedAt.toEpochMilli() + ":" + expiresAt.toEpochMilli()
+                + ":" + credentialVersion + ":" + principal.getUsername();
+        String encodedPayload = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return new IssuedToken(encodedPayload + "." + ENCODER.encodeToString(sign(encodedPayload)), expiresAt);
+    }
+
+    public Optional<AppUserPrincipal> verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return Optional.empty();
+        }
+        String encodedPayload = token.substring(0, dot);
+        try {
+            if (!MessageDigest.isEqual(sign(encodedPayload), DECODER.decode(token.substring(dot + 1)))) {
+                return Optional.empty();
+            }
+            String[] parts = new String(DECODER.decode(encodedPayload), StandardCharsets.UTF_8).split(":", 5);
+            long userId = Long.parseLong(parts[0]);
+            Instant expiresAt = Instant.ofEpochMilli(Long.parseLong(parts[2]));
+            int credentialVersion = Integer.parseInt(parts[3]);
+            String username = parts[4];
+            if (Instant.now().isAfter(expiresAt)) {
+                return Optional.empty();
+            }
+            // Пароль сменён или пользователь удалён после выдачи токена
+            Integer current = credentialVersion(userId);
+            if (current == null || current != credentialVersion) {
+                return Optional.empty();
+            }
+            return Optional.of(new AppUserPrincipal(userId, username, null));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** Следующая проверка токена пользователя прочитает версию учётных данных из БД. */
+    public void evictCredentialVersion(Long userId) {
+        credentialVersions.invalidate(userId);
+    }
+
+    /** null — пользователя нет. */
+    private Integer credentialVersion(Long userId) {
+        Integer cached = credentialVersions.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        List<Integer> versions = jdbcTemplate.queryForList("select credential_version from users where id = ?",
+                Integer.class, userId);
+        if (versions.isEmpty()) {
+            return null;
+        }
+        credentialVersions.put(userId, versions.get(0));
+        return versions.get(0);
+    }
+
+    private byte[] sign(String encodedPayload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            return mac.doFinal(encodedPayload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC is not available", e);
+        }
+    }
+
+    public record IssuedToken(String token, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,58 @@
+package com.jcrpo.fieldcontrol.security;
+
+import com.jcrpo.fieldcontrol.config.CacheConfig;
+import com.jcrpo.fieldcontrol.model.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA-слушатель сущности User: при смене пароля или удалении пользователя сбрасывает
+ * закэшированные учётные данные и версию учётных данных, по которой проверяются токены
+ * (сам отзыв — новая версия в users, см. {@link TokenService}). Кэш поиска по логину
+ * сбрасывается и при регистрации: в нём могло лежать «пользователь не найден».
+ */
+@RequiredArgsConstructor
+public class UserCredentialsListener {
+
+    private final PrincipalCache principalCache;
+    private final TokenService tokenService;
+    private final CacheManager cacheManager;
+
+    @PostPersist
+    public void registered(User user) {
+        evictLookups(user.getUsername());
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void credentialsChanged(User user) {
+        invalidate(user);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Повторно после коммита: параллельный вход мог успеть закэшировать старый хэш
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(user);
+                }
+            });
+        }
+    }
+
+    // Отзыв токенов хранится в users.credential_version; здесь только сбрасывается её копия в памяти
+    private void invalidate(User user) {
+        evictLookups(user.getUsername());
+        principalCache.evict(user.getUsername());
+        tokenService.evictCredentialVersion(user.getId());
+    }
+
+    // BoundedCache сам повторяет сброс после коммита
+    private void evictLookups(String username) {
+        cacheManager.getCache(CacheConfig.USERS).evict(username);
+        cacheManager.getCache(CacheConfig.USER_IDS).evict(username);
+    }
+}
@@ -0,0 +1,218 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.dto.GoalView;
+import com.jcrpo.fieldcontrol.dto.LedgerRow;
+import com.jcrpo.fieldcontrol.dto.TransactionView;
+import com.jcrpo.fieldcontrol.model.SpendingRollup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Копия истории одного пользователя в памяти, по столбцам: суммы в сотых (long[]),
+ * дни (epoch day, int[]), коды типа и категории (byte[]). Итоги считаются проходом по
+ * примитивным массивам — без сущностей, проекций и упаковки.
+ * <p>
+ * Реестр отражает ровно одну версию данных (dataVersion). Изменение применяется, только
+ * если его версия следующая по порядку; иначе вызывающий выбрасывает реестр и строит
+ * заново. Итоги по цели берутся из user_balance при загрузке и дальше ведутся так же,
+ * как там: обнуляются при новой цели.
+ */
+public final class AccountLedger {
+
+    static final byte INCOME = 0;
+    static final byte EXPENSE = 1;
+    // Прочие типы из старых данных: в итогах считаются расходом, как в user_balance
+    static final byte OTHER = 2;
+
+    private static final int MAX_CATEGORIES = 256;
+    private static final int NO_DAY = Integer.MIN_VALUE;
+
+    private long[] amounts;
+    private int[] days;
+    private byte[] types;
+    private byte[] categories;
+    private int size;
+
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<String, Integer> categoryCodes = new HashMap<>();
+
+    private long version;
+    private GoalView goal;
+    private long goalIncome;
+    private long goalExpense;
+
+    AccountLedger(long version, GoalView goal, long goalIncome, long goalExpense, int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        this.amounts = new long[capacity];
+        this.days = new int[capacity];
+        this.types = new byte[capacity];
+        this.categories = new byte[capacity];
+        this.version = version;
+        this.goal = goal;
+        this.goalIncome = goalIncome;
+        this.goalExpense = goalExpense;
+    }
+
+    /** Строка при загрузке; false — категорий больше, чем помещается в byte. */
+    synchronized boolean add(LedgerRow row) {
+        return append(row.amountMinor(), row.date(), row.type(), row.category());
+    }
+
+    /** Новая операция версии version; false — версия не следующая или реестр переполнен. */
+    synchronized boolean apply(long version, TransactionView transaction) {
+        if (version != this.version + 1
+                || !append(transaction.amountMinor(), transaction.date(), transaction.type(), transaction.category())) {
+            return false;
+        }
+        if (types[size - 1] == INCOME) {
+            goalIncome += transaction.amountMinor();
+        } else {
+            goalExpense += transaction.amountMinor();
+        }
+        this.version = version;
+        return true;
+    }
+
+    /** Пакет операций, записанный в БД одной версией version; false — как у одиночной операции. */
+    synchronized boolean apply(long version, List<TransactionView> transactions) {
+        if (version != this.version + 1) {
+            return false;
+        }
+        for (TransactionView transaction : transactions) {
+            if (!append(transaction.amountMinor(), transaction.date(), transaction.type(), transaction.category())) {
+                return false;
+            }
+            if (types[size - 1] == INCOME) {
+                goalIncome += transaction.amountMinor();
+            } else {
+                goalExpense += transaction.amountMinor();
+            }
+        }
+        this.version = version;
+        return true;
+    }
+
+    /** Новая цель версии version: итоги по цели начинаются с нуля. */
+    synchronized boolean apply(long version, GoalView goal) {
+        if (version != this.version + 1) {
+            return false;
+        }
+        this.goal = goal;
+        this.goalIncome = 0;
+        this.goalExpense = 0;
+        this.version = version;
+        return true;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    synchronized GoalView goal() {
+        return goal;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /** Итоги за один проход вместе с их версией; today — день, расходы за который считаются отдельно. */
+    synchronized Totals totals(LocalDate today) {
+        int todayDay = (int) today.toEpochDay();
+        long income = 0;
+        long expense = 0;
+        long todayExpense = 0;
+        for (int i = 0; i < size; i++) {
+            long amount = amounts[i];
+            if (types[i] == INCOME) {
+                income += amount;
+            } else {
+                expense += amount;
+                if (types[i] == EXPENSE && days[i] == todayDay) {
+                    todayExpense += amount;
+                }
+            }
+        }
+        return new Totals(version, income, expense, size, goalIncome, goalExpense, todayExpense);
+    }
+
+    /**
+     * Дневные итоги типа type в [from, to] по категориям — то же, что хранит spending_rollup.
+     * null, если тип реестр не различает (не INCOME и не EXPENSE).
+     */
+    synchronized List<SpendingRollup> rollups(Long userId, String type, LocalDate from, LocalDate to) {
+        byte code = typeCode(type);
+        if (code == OTHER) {
+            return null;
+        }
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        // Ключ — день и код категории; значение — сумма и число операций
+        Map<Long, long[]> groups = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int day = days[i];
+            if (types[i] != code || day < fromDay || day > toDay) {
+                continue;
+            }
+            long[] sum = groups.computeIfAbsent(((long) day << 8) | (categories[i] & 0xFF), k -> new long[2]);
+            sum[0] += amounts[i];
+            sum[1]++;
+        }
+        List<SpendingRollup> rows = new ArrayList<>(groups.size());
+        groups.forEach((key, sum) -> {
+            SpendingRollup row = new SpendingRollup();
+            row.setUserId(userId);
+            row.setDay(LocalDate.ofEpochDay(key >> 8));
+            row.setType(type);
+            row.setCategory(categoryNames.get((int) (key & 0xFF)));
+            row.setTotal(sum[0]);
+            row.setTxCount(sum[1]);
+            rows.add(row);
+        });
+        return rows;
+    }
+
+    private boolean append(long amount, LocalDate date, String type, String category) {
+        // Как в spending_rollup: категория без значения — пустая строка
+        String categoryKey = category == null ? "" : category;
+        Integer categoryCode = categoryCodes.get(categoryKey);
+        if (categoryCode == null) {
+            if (categoryNames.size() == MAX_CATEGORIES) {
+                return false;
+            }
+            categoryCode = categoryNames.size();
+            categoryNames.add(categoryKey);
+            categoryCodes.put(categoryKey, categoryCode);
+        }
+        if (size == amounts.length) {
+            int capacity = size + (size >> 1);
+            amounts = Arrays.copyOf(amounts, capacity);
+            days = Arrays.copyOf(days, capacity);
+            types = Arrays.copyOf(types, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+        }
+        amounts[size] = amount;
+        days[size] = date == null ? NO_DAY : (int) date.toEpochDay();
+        types[size] = typeCode(type);
+        categories[size] = (byte) (int) categoryCode;
+        size++;
+        return true;
+    }
+
+    private static byte typeCode(String type) {
+        if ("INCOME".equals(type)) {
+            return INCOME;
+        }
+        return "EXPENSE".equals(type) ? EXPENSE : OTHER;
+    }
+
+    /** Суммы в сотых; version — версия данных, которой соответствуют итоги. */
+    record Totals(long version, long income, long expense, long count, long goalIncome, long goalExpense,
+                  long todayExpense) {
+    }
+}
@@ -0,0 +1,203 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.dto.AnalyticsReport;
+import com.jcrpo.fieldcontrol.model.SpendingRollup;
+import com.jcrpo.fieldcontrol.model.Transaction;
+import com.jcrpo.fieldcontrol.repository.SpendingRollupRepository;
+import com.jcrpo.fieldcontrol.repository.UserBalanceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Аналитика расходов и доходов из дневных итогов (spending_rollup). Итоги обновляются
+ * в транзакции записи операции; ночная задача пересчитывает недавнее окно из истории,
+ * исправляя возможные расхождения. Итоги по истории, накопленной до их появления, строит
+ * фоновая задача; до её завершения (rollups_ready) отчёт считается по истории за запрошенный
+ * период.
+ */
+@Service
+public class AnalyticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsService.class);
+    private static final LocalDate BEGINNING = LocalDate.of(1970, 1, 1);
+
+    private final SpendingRollupRepository rollupRepository;
+    private final UserBalanceRepository balanceRepository;
+    private final BalanceService balanceService;
+    private final LedgerService ledgerService;
+    private final TransactionTemplate transactionTemplate;
+    private final int repairDays;
+    private final int backfillBatch;
+
+    public AnalyticsService(SpendingRollupRepository rollupRepository,
+                            UserBalanceRepository balanceRepository,
+                            BalanceService balanceService,
+                            LedgerService ledgerService,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${app.analytics.repair-days:35}") int repairDays,
+                            @Value("${app.analytics.backfill-batch:100}") int backfillBatch) {
+        this.rollupRepository = rollupRepository;
+        this.balanceRepository = balanceRepository;
+        this.balanceService = balanceService;
+        this.ledgerService = ledgerService;
+        this.transactionTemplate = transactionTemplate;
+        this.repairDays = repairDays;
+        this.backfillBatch = backfillBatch;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransaction(Long userId, Transaction transaction) {
+        if (transaction.getType() == null || transaction.getDate() == null) {
+            return;
+        }
+        rollupRepository.add(userId, transaction.getDate(), transaction.getType(),
+                categoryKey(transaction.getCategory()), transaction.getAmountMinor(), 1);
+    }
+
+    /** Для пакетной загрузки: один upsert на ключ (день, тип, категория) вместо одного на строку. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransactions(Long userId, Collection<Transaction> transactions) {
+        Map<List<Object>, long[]> sums = new LinkedHashMap<>();
+        for (Transaction t : transactions) {
+            long[] sum = sums.computeIfAbsent(List.of(t.getDate(), t.getType(), categoryKey(t.getCategory())),
+                    key -> new long[2]);
+            sum[0] += t.getAmountMinor();
+            sum[1]++;
+        }
+        sums.forEach((key, sum) -> rollupRepository.add(userId, (LocalDate) key.get(0), (String) key.get(1),
+                (String) key.get(2), sum[0], sum[1]));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleteForUser(Long userId) {
+        rollupRepository.deleteByUserId(userId);
+    }
+
+    /**
+     * Дневные итоги берутся из реестра счёта в памяти, если он есть, иначе из spending_rollup,
+     * а пока итоги пользователя не построены — из истории за [from, to].
+     */
+    @Transactional
+    public AnalyticsReport report(Long userId, String type, LocalDate from, LocalDate to) {
+        List<SpendingRollup> rows = ledgerService.find(userId)
+                .map(ledger -> ledger.rollups(userId, type, from, to))
+                .orElse(null);
+        if (rows == null) {
+            rows = Boolean.TRUE.equals(balanceService.getBalance(userId).getRollupsReady())
+                    ? rollupRepository.findByUserIdAndTypeAndDayBetweenOrderByDayAsc(userId, type, from, to)
+                    : fromHistory(userId, type, from, to);
+        }
+
+        long total = 0;
+        long count = 0;
+        Map<String, Long> byCategory = new TreeMap<>();
+        for (SpendingRollup row : rows) {
+            total += row.getTotal();
+            count += row.getTxCount();
+            byCategory.merge(row.getCategory().isEmpty() ? "other" : row.getCategory(), row.getTotal(), Long::sum);
+        }
+        return new AnalyticsReport(type, from, to, total, count, byCategory,
+                buckets(rows, SpendingRollup::getDay),
+                buckets(rows, r -> r.getDay().with(DayOfWeek.MONDAY)),
+                buckets(rows, r -> r.getDay().withDayOfMonth(1)));
+    }
+
+    /** Ночной пересчёт итогов за последние repairDays дней для пользователей с операциями в этом окне. */
+    @Scheduled(cron = "${app.analytics.repair-cron:0 30 3 * * *}")
+    public void repairRecentRollups() {
+        LocalDate since = LocalDate.now().minusDays(repairDays);
+        List<Long> userIds = rollupRepository.findActiveUserIds(since);
+        for (Long userId : userIds) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> rebuild(userId, since));
+            } catch (RuntimeException e) {
+                log.warn("Failed to repair analytics rollups for user {}: {}", userId, e.toString());
+            }
+        }
+        log.info("Repaired analytics rollups since {} for {} users", since, userIds.size());
+    }
+
+    /**
+     * Итоги по старой истории строятся один раз на пользователя, порциями по backfillBatch, вне
+     * запросов: полный GROUP BY по истории слишком долог для ответа на отчёт.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.backfill-interval:PT1M}")
+    public void backfillRollups() {
+        int built = 0;
+        for (Long userId : balanceRepository.findWithoutRollups(Limit.of(backfillBatch))) {
+            try {
+                Boolean done = transactionTemplate.execute(status -> {
+                    if (balanceRepository.lockWithoutRollups(userId).isEmpty()) {
+                        return false;
+                    }
+                    rebuild(userId, BEGINNING);
+                    balanceRepository.markRollupsReady(userId);
+                    return true;
+                });
+                if (Boolean.TRUE.equals(done)) {
+                    built++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to build analytics rollups for user {}: {}", userId, e.toString());
+            }
+        }
+        if (built > 0) {
+            log.info("Built analytics rollups for {} users", built);
+        }
+    }
+
+    private List<SpendingRollup> fromHistory(Long userId, String type, LocalDate from, LocalDate to) {
+        List<Object[]> groups = rollupRepository.aggregateHistory(userId, type, from, to);
+        List<SpendingRollup> rows = new ArrayList<>(groups.size());
+        for (Object[] group : groups) {
+            SpendingRollup row = new SpendingRollup();
+            row.setUserId(userId);
+            row.setDay(group[0] instanceof Date date ? date.toLocalDate() : (LocalDate) group[0]);
+            row.setType(type);
+            row.setCategory((String) group[1]);
+            row.setTotal(((Number) group[2]).longValue());
+            row.setTxCount(((Number) group[3]).longValue());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private void rebuild(Long userId, LocalDate since) {
+        rollupRepository.deleteByUserIdSince(userId, since);
+        rollupRepository.rebuildSince(userId, since);
+    }
+
+    private static List<AnalyticsReport.Bucket> buckets(List<SpendingRollup> rows, Function<SpendingRollup, LocalDate> key) {
+        Map<LocalDate, long[]> grouped = new TreeMap<>();
+        for (SpendingRollup row : rows) {
+            long[] sum = grouped.computeIfAbsent(key.apply(row), k -> new long[2]);
+            sum[0] += row.getTotal();
+            sum[1] += row.getTxCount();
+        }
+        List<AnalyticsReport.Bucket> buckets = new ArrayList<>(grouped.size());
+        grouped.forEach((start, sum) -> buckets.add(new AnalyticsReport.Bucket(start, sum[0], sum[1])));
+        return buckets;
+    }
+
+    private static String categoryKey(String category) {
+        return category == null ? "" : category;
+    }
+}
@@ -0,0 +1,90 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.dto.DataVersion;
+import com.jcrpo.fieldcontrol.model.Transaction;
+import com.jcrpo.fieldcontrol.model.UserBalance;
+import com.jcrpo.fieldcontrol.repository.UserBalanceRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Поддерживает таблицу user_balance. Все методы должны вызываться внутри транзакции,
+ * изменяющей историю, чтобы итоги и операции фиксировались атомарно.
+ */
+@Service
+@RequiredArgsConstructor
+public class BalanceService {
+
+    private final UserBalanceRepository balanceRepository;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransaction(Long userId, Transaction transaction) {
+        boolean income = "INCOME".equals(transaction.getType());
+        long amount = transaction.getAmountMinor();
+        applyDelta(userId, income ? amount : 0, income ? 0 : amount, 1);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyDelta(Long userId, long income, long expense, long count) {
+        if (balanceRepository.applyDelta(userId, income, expense, count) > 0) {
+            return;
+        }
+        // Строки ещё нет: агрегат по истории уже включает только что сохранённую операцию
+        if (balanceRepository.initializeFromHistory(userId) == 0) {
+            // Параллельная транзакция успела создать строку без нашей операции — добавляем её
+            balanceRepository.applyDelta(userId, income, expense, count);
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void ensureInitialized(Long userId) {
+        if (!balanceRepository.existsById(userId)) {
+            balanceRepository.initializeFromHistory(userId);
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void startGoal(Long userId, Long goalId) {
+        balanceRepository.startGoal(userId, goalId);
+    }
+
+    /**
+     * Следующая версия данных пользователя. Строка баланса блокируется до конца транзакции,
+     * поэтому версии выдаются строго по порядку и фиксируются вместе с изменением.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long nextVersion(Long userId) {
+        if (balanceRepository.bumpVersion(userId) == 0) {
+            balanceRepository.initializeFromHistory(userId);
+            balanceRepository.bumpVersion(userId);
+        }
+        return balanceRepository.findVersion(userId).orElseThrow().version();
+    }
+
+    /** Обнуляет итоги; возвращает версию, в которой произошло удаление. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long reset(Long userId) {
+        if (balanceRepository.reset(userId) == 0) {
+            // Без строки версия осталась бы 0 и клиент получил бы 304 на удалённые данные
+            balanceRepository.initializeFromHistory(userId);
+            balanceRepository.reset(userId);
+        }
+        return balanceRepository.findVersion(userId).orElseThrow().version();
+    }
+
+    public DataVersion getVersion(Long userId) {
+        return balanceRepository.findVersion(userId).orElse(DataVersion.INITIAL);
+    }
+
+    @Transactional
+    public UserBalance getBalance(Long userId) {
+        ensureInitialized(userId);
+        return balanceRepository.findById(userId).orElseGet(() -> {
+            UserBalance empty = new UserBalance();
+            empty.setUserId(userId);
+            return empty;
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jcrpo.fieldcontrol.model.RateSnapshot;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Разбор ответа belarusbank.by/api/kursExchange: массив отделений с полями вида USD_in / USD_out.
+ * Берётся первое отделение с заполненным курсом доллара — так же, как делал клиент.
+ */
+public final class BelarusbankRateParser {
+
+    // Банк публикует курс за 1, 10 или 100 единиц валюты
+    private static final Map<String, Integer> UNITS = Map.of(
+            "USD", 1,
+            "EUR", 1,
+            "RUB", 100,
+            "CNY", 10);
+
+    private BelarusbankRateParser() {
+    }
+
+    public static RateSnapshot parse(ObjectMapper mapper, String payload, Instant updatedAt) throws IOException {
+        JsonNode root = mapper.readTree(payload);
+        if (!root.isArray()) {
+            throw new IOException("Unexpected rates payload: array of branches expected");
+        }
+        for (JsonNode branch : root) {
+            if (!(number(branch, "USD_in") > 0)) {
+                continue;
+            }
+            Map<String, double[]> rates = new LinkedHashMap<>();
+            UNITS.forEach((code, units) -> {
+                double buy = number(branch, code + "_in");
+                double sell = number(branch, code + "_out");
+                if (buy > 0 && sell > 0) {
+                    rates.put(code, new double[]{buy / units, sell / units});
+                }
+            });
+            return RateSnapshot.of(rates, updatedAt);
+        }
+        throw new IOException("Rates payload has no branch with USD rates");
+    }
+
+    private static double number(JsonNode branch, String field) {
+        JsonNode node = branch.get(field);
+        if (node == null || node.isNull()) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(node.asText().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jcrpo.fieldcontrol.model.RateSnapshot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+
+@Component
+@ConditionalOnProperty(name = "app.currency.provider", havingValue = "belarusbank", matchIfMissing = true)
+@RequiredArgsConstructor
+public class BelarusbankRateProvider implements RateProvider {
+
+    private static final String BELARUSBANK_API_URL = "https://belarusbank.by/api/kursExchange?city=Минск";
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public RateSnapshot fetchLatest() throws IOException {
+        var resp = restTemplate.getForEntity(BELARUSBANK_API_URL, String.class);
+        if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null || resp.getBody().isBlank()) {
+            throw new IOException("Belarusbank responded with " + resp.getStatusCode());
+        }
+        return BelarusbankRateParser.parse(objectMapper, resp.getBody(), Instant.now());
+    }
+}
@@ -0,0 +1,243 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.model.Money;
+import com.jcrpo.fieldcontrol.model.Transaction;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Читает CSV-выписку потоково (RFC 4180: кавычки, переводы строк внутри полей).
+ * Первая строка — заголовок; разделитель ',' или ';' определяется по нему.
+ * Колонки: amount, currency, type, category, description, date, timestamp (лишние игнорируются).
+ * Если колонки type нет, знак суммы задаёт тип: отрицательная — расход.
+ * Неразборчивая строка не прерывает чтение: операция возвращается с некорректной
+ * суммой или типом и отклоняется проверкой — нумерация строк не сбивается.
+ * Строка данных — непустая запись: пустые строки не считаются ни в {@link #next}, ни в
+ * {@link #skip}, поэтому продолжение загрузки попадает ровно на следующую строку.
+ */
+public class CsvTransactionSource implements TransactionSource {
+
+    private static final DateTimeFormatter DOTTED_DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final Reader reader;
+    private final char delimiter;
+    private final String header;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final StringBuilder field = new StringBuilder();
+    private int peeked = -2;
+
+    public CsvTransactionSource(Reader reader) throws IOException {
+        this.reader = reader;
+        this.header = readLine();
+        if (header == null || header.isBlank()) {
+            throw new IOException("CSV header is missing");
+        }
+        this.delimiter = header.indexOf(';') >= 0 && header.indexOf(',') < 0 ? ';' : ',';
+        List<String> names = parseFields(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("amount")) {
+            throw new IOException("CSV header must contain an 'amount' column");
+        }
+    }
+
+    public String header() {
+        return header;
+    }
+
+    /** Пропускает count строк данных (продолжение прерванной загрузки). */
+    public void skip(long count) throws IOException {
+        for (long i = 0; i < count; i++) {
+            if (readDataRecord() == null) {
+                throw new IOException("File ended after " + i + " rows, expected at least " + count);
+            }
+        }
+    }
+
+    @Override
+    public Transaction next() throws IOException {
+        List<String> record = readDataRecord();
+        return record == null ? null : toTransaction(record);
+    }
+
+    /** Следующая непустая запись — единица счёта строк для next и skip. */
+    private List<String> readDataRecord() throws IOException {
+        List<String> record = readRecord();
+        while (record != null && record.size() == 1 && record.get(0).isBlank()) {
+            record = readRecord();
+        }
+        return record;
+    }
+
+    private Transaction toTransaction(List<String> record) {
+        Transaction transaction = new Transaction();
+        String type = column(record, "type");
+        // Нечитаемая сумма остаётся нулём и отклоняется при проверке строки
+        long amount = parseAmount(column(record, "amount"));
+        if (type == null || type.isBlank()) {
+            type = amount < 0 ? "EXPENSE" : "INCOME";
+        }
+        transaction.setType(type);
+        transaction.setAmountMinor(Math.abs(amount));
+        transaction.setCurrency(emptyToNull(column(record, "currency")));
+        transaction.setCategory(emptyToNull(column(record, "category")));
+        transaction.setDescription(emptyToNull(column(record, "description")));
+        transaction.setDate(parseDate(column(record, "date")));
+        transaction.setTimestamp(parseTimestamp(column(record, "timestamp")));
+        return transaction;
+    }
+
+    private String column(List<String> record, String name) {
+        Integer index = columns.get(name);
+        return index == null || index >= record.size() ? null : record.get(index).trim();
+    }
+
+    private static long parseAmount(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        String normalized = value.replace(" ", "").replace(" ", "");
+        // Десятичная запятая в банковских выгрузках: "1234,56"
+        if (normalized.indexOf('.') < 0) {
+            normalized = normalized.replace(',', '.');
+        }
+        try {
+            return Money.parse(normalized);
+        } catch (NumberFormatException | ArithmeticException e) {
+            return 0;
+        }
+    }
+
+    private static LocalDate parseDate(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return value.indexOf('.') > 0 ? LocalDate.parse(value, DOTTED_DATE) : LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static LocalDateTime parseTimestamp(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value.replace(' ', 'T'));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = read()) >= 0 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return c < 0 && line.isEmpty() ? null : stripBom(line.toString());
+    }
+
+    private static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '﻿' ? line.substring(1) : line;
+    }
+
+    private List<String> parseFields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    /** Одна запись; поле в кавычках может содержать разделители и переводы строк. */
+    private List<String> readRecord() throws IOException {
+        int c = read();
+        if (c < 0) {
+            return null;
+        }
+        List<String> record = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        while (c >= 0) {
+            if (quoted) {
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == delimiter) {
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = read();
+        }
+        record.add(field.toString());
+        return record;
+    }
+
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+}
@@ -0,0 +1,60 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.dto.TransactionView;
+import com.jcrpo.fieldcontrol.model.Money;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/** Пишет операции в CSV построчно; формат читается обратно {@link CsvTransactionSource}. */
+public class CsvTransactionWriter {
+
+    public static final String HEADER = "id,date,timestamp,type,amount,currency,category,description";
+
+    private final Writer out;
+
+    public CsvTransactionWriter(Writer out) throws IOException {
+        this.out = out;
+        out.write(HEADER);
+        out.write("\r\n");
+    }
+
+    public void write(TransactionView t) {
+        try {
+            out.write(t.id() == null ? "" : t.id().toString());
+            out.write(',');
+            out.write(t.date() == null ? "" : t.date().toString());
+            out.write(',');
+            out.write(t.timestamp() == null ? "" : t.timestamp().toString());
+            out.write(',');
+            writeText(t.type());
+            out.write(',');
+            out.write(Money.format(t.amountMinor()));
+            out.write(',');
+            writeText(t.currency());
+            out.write(',');
+            writeText(t.category());
+            out.write(',');
+            writeText(t.description());
+            out.write("\r\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeText(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean needsQuotes = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!needsQuotes) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
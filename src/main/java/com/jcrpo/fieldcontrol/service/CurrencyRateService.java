@@ -0,0 +1,248 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jcrpo.fieldcontrol.model.CurrencyRateRecord;
+import com.jcrpo.fieldcontrol.model.RateSnapshot;
+import com.jcrpo.fieldcontrol.repository.CurrencyRateRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Держит текущий снимок курсов. Ответ банка разбирается один раз при обновлении,
+ * снимок заменяется атомарно (volatile), чтение не требует блокировок.
+ * Каждый новый снимок сохраняется в БД: при старте последний загружается без сетевых
+ * вызовов, а история позволяет оценивать прошлые операции по курсу их даты.
+ */
+@Service
+public class CurrencyRateService {
+
+    private static final Logger log = LoggerFactory.getLogger(CurrencyRateService.class);
+    // Курсы публикуются по минскому времени
+    private static final ZoneId RATES_ZONE = ZoneId.of("Europe/Minsk");
+    private static final TypeReference<Map<String, Map<String, Double>>> RATES_TYPE = new TypeReference<>() {
+    };
+
+    // минимальные значения по умолчанию, если в БД ещё нет ни одного снимка
+    private static final RateSnapshot DEFAULT_RATES =
+            RateSnapshot.of(Map.of("USD", new double[]{3.2000, 3.2500}), Instant.EPOCH);
+
+    private final RateProvider rateProvider;
+    private final CurrencyRateRecordRepository rateRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor taskExecutor;
+    private final CircuitBreaker circuitBreaker;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration staleAfter;
+    private final Counter refreshSuccess;
+    private final Counter refreshFailure;
+    private final Counter refreshRejected;
+
+    // Прошлые дни не меняются — их снимки можно кэшировать надолго
+    private final Cache<LocalDate, RateSnapshot> historyCache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofHours(12))
+            .maximumSize(1024)
+            .recordStats()
+            .build();
+    private final AtomicBoolean refreshInFlight = new AtomicBoolean();
+    // Не synchronized: монитор, удерживаемый на сетевом вызове, закрепил бы виртуальный поток за носителем
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile RateSnapshot current = DEFAULT_RATES;
+    private volatile Instant lastSuccessfulCheck = Instant.EPOCH;
+
+    public CurrencyRateService(RateProvider rateProvider,
+                               CurrencyRateRecordRepository rateRecordRepository,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               ApplicationEventPublisher eventPublisher,
+                               @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+                               @Value("${app.currency.stale-after:PT20M}") Duration staleAfter,
+                               @Value("${app.currency.breaker.failure-threshold:3}") int failureThreshold,
+                               @Value("${app.currency.breaker.open-duration:PT5M}") Duration openDuration) {
+        this.rateProvider = rateProvider;
+        this.rateRecordRepository = rateRecordRepository;
+        this.objectMapper = objectMapper;
+        this.taskExecutor = taskExecutor;
+        this.staleAfter = staleAfter;
+        this.eventPublisher = eventPublisher;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+
+        this.refreshSuccess = refreshCounter(meterRegistry, "success");
+        this.refreshFailure = refreshCounter(meterRegistry, "failure");
+        this.refreshRejected = refreshCounter(meterRegistry, "circuit_open");
+        Gauge.builder("currency.rates.age", () -> secondsSince(current.getUpdatedAt()))
+                .description("Age of the rates being served").baseUnit("seconds").register(meterRegistry);
+        Gauge.builder("currency.last.success.age", () -> secondsSince(lastSuccessfulCheck))
+                .description("Time since the provider last answered").baseUnit("seconds").register(meterRegistry);
+        Gauge.builder("currency.breaker.open", () -> circuitBreaker.state() == CircuitBreaker.State.OPEN ? 1 : 0)
+                .description("1 when the provider circuit breaker is open").register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, historyCache, "currencyHistory");
+    }
+
+    /** Тёплый старт: последний сохранённый снимок доступен до первого запроса к банку. */
+    @PostConstruct
+    void loadLatestSnapshot() {
+        try {
+            rateRecordRepository.findTopByOrderByUpdatedAtDesc()
+                    .map(this::toSnapshot)
+                    .ifPresent(snapshot -> {
+                        current = snapshot;
+                        lastSuccessfulCheck = snapshot.getUpdatedAt();
+                        log.info("Loaded persisted currency rates from {}", snapshot.getUpdatedAt());
+                    });
+        } catch (RuntimeException e) {
+            log.warn("Could not load persisted currency rates: {}", e.toString());
+        }
+    }
+
+    /** После старта идём в сеть, только если сохранённый снимок отсутствует или устарел. */
+    @EventListener(ApplicationReadyEvent.class)
+    void refreshIfStale() {
+        current();
+    }
+
+    /**
+     * Текущий снимок; никогда не ждёт сеть. Если данные устарели, запускает
+     * фоновое обновление (stale-while-revalidate).
+     */
+    public RateSnapshot current() {
+        if (Duration.between(lastSuccessfulCheck, Instant.now()).compareTo(staleAfter) > 0
+                && refreshInFlight.compareAndSet(false, true)) {
+            try {
+                taskExecutor.execute(() -> {
+                    try {
+                        refresh();
+                    } finally {
+                        refreshInFlight.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                refreshInFlight.set(false);
+            }
+        }
+        return current;
+    }
+
+    /** Снимок, действовавший на конец указанного дня (по минскому времени), если он есть. */
+    public Optional<RateSnapshot> ratesAt(LocalDate date) {
+        boolean pastDay = date.isBefore(LocalDate.now(RATES_ZONE));
+        if (pastDay) {
+            RateSnapshot cached = historyCache.getIfPresent(date);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+        Instant endOfDay = date.plusDays(1).atStartOfDay(RATES_ZONE).toInstant();
+        Optional<RateSnapshot> snapshot = rateRecordRepository.findTopByUpdatedAtLessThanOrderByUpdatedAtDesc(endOfDay)
+                .map(this::toSnapshot);
+        if (pastDay) {
+            snapshot.ifPresent(s -> historyCache.put(date, s));
+        }
+        return snapshot;
+    }
+
+    public CircuitBreaker.State breakerState() {
+        return circuitBreaker.state();
+    }
+
+    public Instant lastSuccessfulCheck() {
+        return lastSuccessfulCheck;
+    }
+
+    /** Фоновое обновление курсов раз в 15 минут — не блокирует вход */
+    @Scheduled(fixedDelay = 15 * 60 * 1000, initialDelay = 15 * 60 * 1000)
+    public void refreshRates() {
+        refresh();
+    }
+
+    private void refresh() {
+        refreshLock.lock();
+        try {
+            if (!circuitBreaker.allowRequest()) {
+                refreshRejected.increment();
+                log.debug("Currency provider circuit is open, serving rates from {}", current.getUpdatedAt());
+                return;
+            }
+            try {
+                RateSnapshot fresh = rateProvider.fetchLatest();
+                circuitBreaker.recordSuccess();
+                refreshSuccess.increment();
+                lastSuccessfulCheck = Instant.now();
+                if (fresh.sameRatesAs(current)) {
+                    // Курсы не изменились: оставляем прежний снимок, чтобы клиенты получали 304
+                    log.debug("Currency rates unchanged");
+                    return;
+                }
+                persist(fresh);
+                current = fresh;
+                log.info("Currency rates updated successfully at {}", fresh.getUpdatedAt());
+                eventPublisher.publishEvent(new RatesRefreshedEvent(fresh));
+            } catch (Exception ex) {
+                circuitBreaker.recordFailure();
+                refreshFailure.increment();
+                log.warn("Failed to refresh currency rates ({}): {}", circuitBreaker.state(), ex.toString());
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void persist(RateSnapshot snapshot) {
+        try {
+            CurrencyRateRecord record = new CurrencyRateRecord();
+            record.setUpdatedAt(snapshot.getUpdatedAt());
+            record.setRates(objectMapper.writeValueAsString(snapshot.toRateMap()));
+            rateRecordRepository.save(record);
+        } catch (IOException | RuntimeException e) {
+            // Снимок всё равно используем из памяти; потеряется только запись в истории
+            log.warn("Could not persist currency rates: {}", e.toString());
+        }
+    }
+
+    private static Counter refreshCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("currency.refresh").description("Currency rate refresh attempts by result")
+                .tag("result", result).register(meterRegistry);
+    }
+
+    private static double secondsSince(Instant instant) {
+        return Duration.between(instant, Instant.now()).toMillis() / 1000.0;
+    }
+
+    private RateSnapshot toSnapshot(CurrencyRateRecord record) {
+        try {
+            Map<String, double[]> rates = new LinkedHashMap<>();
+            objectMapper.readValue(record.getRates(), RATES_TYPE)
+                    .forEach((code, rate) -> rates.put(code, new double[]{rate.get("buy"), rate.get("sell")}));
+            return RateSnapshot.of(rates, record.getUpdatedAt());
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt currency rate snapshot " + record.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.dto.GoalView;
+import com.jcrpo.fieldcontrol.dto.TransactionView;
+
+import java.util.List;
+
+/**
+ * Изменение данных пользователя в версии version. Публикуется внутри пишущей транзакции
+ * и доставляется подписчикам только после её фиксации.
+ */
+public record DataChangedEvent(Long userId, long version, Kind kind,
+                               TransactionView transaction, GoalView goal, int count,
+                               List<TransactionView> transactions) {
+
+    public enum Kind { TRANSACTION, GOAL, BULK, RESET }
+
+    public static DataChangedEvent transaction(Long userId, long version, TransactionView transaction) {
+        return new DataChangedEvent(userId, version, Kind.TRANSACTION, transaction, null, 1, null);
+    }
+
+    public static DataChangedEvent goal(Long userId, long version, GoalView goal) {
+        return new DataChangedEvent(userId, version, Kind.GOAL, null, goal, 0, null);
+    }
+
+    /** Пакетная загрузка: операции не пересылаются, клиент догружает изменения сам. */
+    public static DataChangedEvent bulk(Long userId, long version, int count) {
+        return new DataChangedEvent(userId, version, Kind.BULK, null, null, count, null);
+    }
+
+    /**
+     * Пакет журнала: для клиентов — та же пакетная загрузка, а реестр счёта дописывает
+     * операции пакета сам, не перестраиваясь из БД.
+     */
+    public static DataChangedEvent bulk(Long userId, long version, List<TransactionView> transactions) {
+        return new DataChangedEvent(userId, version, Kind.BULK, null, null, transactions.size(), transactions);
+    }
+
+    public static DataChangedEvent reset(Long userId, long version) {
+        return new DataChangedEvent(userId, version, Kind.RESET, null, null, 0, null);
+    }
+}
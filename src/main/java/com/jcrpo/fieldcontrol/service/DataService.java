@@ -1,53 +1,230 @@
 package com.jcrpo.fieldcontrol.service;
 
+import com.jcrpo.fieldcontrol.config.CacheConfig;
+import com.jcrpo.fieldcontrol.dto.BalanceSummary;
+import com.jcrpo.fieldcontrol.dto.DataVersion;
+import com.jcrpo.fieldcontrol.dto.GoalView;
+import com.jcrpo.fieldcontrol.dto.HistoryCursor;
+import com.jcrpo.fieldcontrol.dto.TransactionFilter;
+import com.jcrpo.fieldcontrol.dto.TransactionPage;
+import com.jcrpo.fieldcontrol.dto.TransactionView;
 import com.jcrpo.fieldcontrol.model.Goal;
+import com.jcrpo.fieldcontrol.model.Money;
+import com.jcrpo.fieldcontrol.model.RateSnapshot;
 import com.jcrpo.fieldcontrol.model.Transaction;
-import com.jcrpo.fieldcontrol.model.User;
+import com.jcrpo.fieldcontrol.model.UserBalance;
+import com.jcrpo.fieldcontrol.repository.ArchivedTransactionRepository;
 import com.jcrpo.fieldcontrol.repository.GoalRepository;
 import com.jcrpo.fieldcontrol.repository.TransactionRepository;
+import com.jcrpo.fieldcontrol.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional; // <-- НОВЫЙ ИМПОРТ
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+/**
+ * Операции с целью и историей. Все методы работают по id пользователя:
+ * сущность User при чтении не загружается, а при записи берётся ссылка без select.
+ */
 @Service
 @RequiredArgsConstructor
 public class DataService {
 
     private final GoalRepository goalRepository;
     private final TransactionRepository transactionRepository;
+    private final ArchivedTransactionRepository archivedTransactionRepository;
+    private final UserRepository userRepository;
+    private final BalanceService balanceService;
+    private final CurrencyRateService currencyRateService;
+    private final AnalyticsService analyticsService;
+    private final LedgerService ledgerService;
+    private final TransactionJournal journal;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public Goal saveGoal(Goal goal, User user) {
-        goal.setUser(user);
-        return goalRepository.save(goal);
+    /**
+     * @throws IllegalArgumentException валюта цели не ISO 4217 или отличается от валюты,
+     *                                  в которой уже ведётся история (суммы не пересчитываются)
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.GOALS, key = "#p1")
+    public Goal saveGoal(Goal goal, Long userId) {
+        String currency = goal.getCurrency() == null ? RateSnapshot.BASE : Money.currencyCode(goal.getCurrency());
+        if (currency == null) {
+            throw new IllegalArgumentException("currency must be a three-letter ISO 4217 code");
+        }
+        goal.setCurrency(currency);
+        // Баланс фиксируем до сохранения, чтобы новая цель начиналась с нуля
+        long version = balanceService.nextVersion(userId);
+        // Под блокировкой строки баланса: операция в прежней валюте не успеет записаться между проверкой и сменой
+        String accountCurrency = goalRepository.findCurrency(userId);
+        if (!currency.equals(accountCurrency) && (balanceService.getBalance(userId).getTransactionCount() > 0
+                || !journal.pending(userId).isEmpty())) {
+            throw new IllegalArgumentException("History is kept in " + accountCurrency
+                    + "; delete it before switching the goal to " + currency);
+        }
+        goal.setChangeVersion(version);
+        goal.setUser(userRepository.getReferenceById(userId));
+        Goal saved = goalRepository.save(goal);
+        balanceService.startGoal(userId, saved.getId());
+        eventPublisher.publishEvent(DataChangedEvent.goal(userId, version, GoalView.of(saved)));
+        return saved;
+    }
+
+    public Optional<GoalView> getGoal(Long userId) {
+        return goalRepository.findFirstByUserIdOrderByIdDesc(userId);
+    }
+
+    @Transactional
+    public Transaction saveTransaction(Transaction transaction, Long userId) {
+        // Те же проверки, что у пакетной загрузки и журнала; присланный id сбрасывается
+        String error = TransactionIngestService.validate(transaction);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        long version = balanceService.nextVersion(userId);
+        // Валюта учёта читается под блокировкой строки баланса, которую берёт и смена цели
+        error = TransactionIngestService.checkCurrency(transaction, goalRepository.findCurrency(userId));
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        transaction.setChangeVersion(version);
+        transaction.setUser(userRepository.getReferenceById(userId));
+        Transaction saved = transactionRepository.save(transaction);
+        balanceService.recordTransaction(userId, saved);
+        analyticsService.recordTransaction(userId, saved);
+        eventPublisher.publishEvent(DataChangedEvent.transaction(userId, version, TransactionView.of(saved)));
+        return saved;
+    }
+
+    /**
+     * Итоги из реестра счёта в памяти; для счетов, которые в него не помещаются, —
+     * из user_balance и запроса за сегодняшние расходы. Операции журнала, которых нет
+     * в прочитанной версии данных, добавляются сверху — без общей блокировки на время чтения БД.
+     *
+     * @param displayCurrency валюта для пересчёта итогов или null
+     */
+    public BalanceSummary getSummary(Long userId, String displayCurrency) {
+        // Снимок журнала до чтения БД: операция, записанная за это время, отсеется по версии
+        TransactionJournal.Snapshot journalSnapshot = journal.snapshot(userId);
+        LocalDate today = LocalDate.now();
+        Optional<AccountLedger> ledger = ledgerService.find(userId);
+        GoalView goal;
+        AccountLedger.Totals totals;
+        if (ledger.isPresent()) {
+            goal = ledger.get().goal();
+            totals = ledger.get().totals(today);
+        } else {
+            UserBalance balance = balanceService.getBalance(userId);
+            goal = getGoal(userId).orElse(null);
+            totals = new AccountLedger.Totals(balance.getDataVersion(), balance.getIncome(), balance.getExpense(),
+                    balance.getTransactionCount(), balance.getGoalIncome(), balance.getGoalExpense(),
+                    transactionRepository.sumExpensesByUserIdAndDate(userId, today));
+        }
+        List<TransactionView> pending = journalSnapshot.notIn(totals.version());
+        if (!pending.isEmpty()) {
+            totals = withPending(totals, pending, today);
+        }
+        long net = totals.income() - totals.expense();
+        long goalCollected = totals.goalIncome() - totals.goalExpense();
+        return new BalanceSummary(
+                goal,
+                totals.income(),
+                totals.expense(),
+                net,
+                goalCollected,
+                totals.count(),
+                totals.todayExpense(),
+                displayCurrency == null ? null : convert(goal, net, goalCollected, displayCurrency));
+    }
+
+    private static AccountLedger.Totals withPending(AccountLedger.Totals totals, List<TransactionView> pending,
+                                                    LocalDate today) {
+        long income = 0;
+        long expense = 0;
+        long todayExpense = 0;
+        for (TransactionView t : pending) {
+            if ("INCOME".equals(t.type())) {
+                income += t.amountMinor();
+            } else {
+                expense += t.amountMinor();
+                if (today.equals(t.date())) {
+                    todayExpense += t.amountMinor();
+                }
+            }
+        }
+        // Новые операции относятся и к текущей цели
+        return new AccountLedger.Totals(totals.version(), totals.income() + income, totals.expense() + expense,
+                totals.count() + pending.size(), totals.goalIncome() + income, totals.goalExpense() + expense,
+                totals.todayExpense() + todayExpense);
+    }
+
+    private BalanceSummary.Converted convert(GoalView goal, long net, long goalCollected, String currency) {
+        String from = goal != null && goal.currency() != null ? goal.currency() : RateSnapshot.BASE;
+        double rate = currencyRateService.current().rate(from, currency);
+        if (Double.isNaN(rate)) {
+            throw new IllegalArgumentException("Unknown currency pair " + from + "/" + currency);
+        }
+        return new BalanceSummary.Converted(currency, rate, Money.convert(net, rate), Money.convert(goalCollected, rate),
+                goal == null ? 0 : Money.convert(goal.amountMinor(), rate));
+    }
+
+    public List<TransactionView> getTodayExpenses(Long userId) {
+        return transactionRepository.findByUserIdAndDate(userId, LocalDate.now());
+    }
+
+    public TransactionPage getTransactionPage(Long userId, TransactionFilter filter, HistoryCursor after, int limit) {
+        // Берём на одну запись больше, чтобы понять, есть ли следующая страница
+        List<TransactionView> rows = transactionRepository.findHistoryPage(userId, filter, after, limit + 1);
+        if (rows.size() <= limit) {
+            return new TransactionPage(rows, null);
+        }
+        List<TransactionView> page = rows.subList(0, limit);
+        TransactionView last = page.get(limit - 1);
+        return new TransactionPage(page, new HistoryCursor(last.timestamp(), last.id()).encode());
     }
 
-    public Optional<Goal> getGoal(User user) {
-        return goalRepository.findByUser(user);
+    /** Передаёт историю построчно из курсора БД; память не зависит от её длины. */
+    @Transactional(readOnly = true)
+    public void forEachTransaction(Long userId, TransactionFilter filter, Consumer<TransactionView> consumer) {
+        try (Stream<TransactionView> stream = transactionRepository.streamHistory(userId, filter)) {
+            stream.forEach(consumer);
+        }
     }
 
-    public Transaction saveTransaction(Transaction transaction, User user) {
-        transaction.setUser(user);
-        return transactionRepository.save(transaction);
+    public DataVersion getDataVersion(Long userId) {
+        return balanceService.getVersion(userId);
     }
 
-    public List<Transaction> getTodayExpenses(User user) {
-        return transactionRepository.findByUserAndDate(user, LocalDate.now());
+    /** Цель, если она менялась в версиях (since, upTo]. */
+    public Optional<GoalView> getGoalChangedSince(Long userId, long since, long upTo) {
+        return goalRepository.findChangedGoal(userId, since, upTo);
     }
 
-    public List<Transaction> getAllUserTransactions(User user) {
-        return transactionRepository.findByUser(user);
+    /** Передаёт операции, добавленные в версиях (since, upTo]; объём зависит только от числа изменений. */
+    @Transactional(readOnly = true)
+    public void forEachChange(Long userId, long since, long upTo, Consumer<TransactionView> consumer) {
+        try (Stream<TransactionView> stream = transactionRepository.streamChanges(userId, since, upTo)) {
+            stream.forEach(consumer);
+        }
     }
 
-    // НОВЫЙ МЕТОД для удаления цели и всех транзакций
+    // Удаление цели и всех транзакций (включая архив)
     @Transactional
-    public void deleteGoalAndTransactions(User user) {
-        // Сначала удаляем все транзакции, связанные с пользователем
-        transactionRepository.deleteAllByUser(user);
-        // Затем удаляем саму цель
-        goalRepository.deleteByUser(user);
+    public void deleteGoalAndTransactions(Long userId) {
+        // Сначала обнуляем итоги: блокировка строки баланса дожидается конкурирующих записей,
+        // и удаление ниже видит всё, что вошло в обнулённый баланс
+        long version = balanceService.reset(userId);
+        transactionRepository.deleteAllByUserId(userId);
+        archivedTransactionRepository.deleteAllByUserId(userId);
+        goalRepository.deleteByUserId(userId);
+        analyticsService.deleteForUser(userId);
+        eventPublisher.publishEvent(DataChangedEvent.reset(userId, version));
     }
-}
\ No newline at end of file
+}
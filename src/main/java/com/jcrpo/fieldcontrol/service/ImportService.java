@@ -0,0 +1,135 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.dto.BatchIngestResult;
+import com.jcrpo.fieldcontrol.dto.ImportResult;
+import com.jcrpo.fieldcontrol.model.ImportJob;
+import com.jcrpo.fieldcontrol.repository.ImportJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Загрузка CSV-выписок. Файл читается потоково и пишется порциями через
+ * {@link TransactionIngestService}; после каждой порции в import_job фиксируется,
+ * сколько строк файла уже обработано. Прерванную загрузку продолжают тем же файлом
+ * с параметром resume — обработанные строки пропускаются без записи.
+ */
+@Service
+public class ImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportService.class);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final ImportJobRepository importJobRepository;
+    private final TransactionIngestService ingestService;
+    private final Duration staleAfter;
+
+    public ImportService(ImportJobRepository importJobRepository,
+                         TransactionIngestService ingestService,
+                         @Value("${app.import.stale-after:PT2M}") Duration staleAfter) {
+        this.importJobRepository = importJobRepository;
+        this.ingestService = ingestService;
+        this.staleAfter = staleAfter;
+    }
+
+    public Optional<ImportJob> getJob(Long userId, Long jobId) {
+        return importJobRepository.findByIdAndUserId(jobId, userId);
+    }
+
+    /**
+     * @param resumeJobId задача, которую нужно продолжить, или null для новой загрузки
+     * @throws IllegalStateException задача уже выполняется или завершена
+     * @throws IllegalArgumentException задача не найдена или файл не совпадает с исходным
+     */
+    public ImportResult importCsv(Long userId, Long resumeJobId, String fileName, InputStream in) throws IOException {
+        long started = System.nanoTime();
+        CsvTransactionSource source = new CsvTransactionSource(
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024));
+        ImportJob job = resumeJobId == null
+                ? createJob(userId, fileName, source.header())
+                : claimJob(userId, resumeJobId, source.header());
+
+        long offset = job.getRowsConsumed();
+        long acceptedBefore = job.getRowsAccepted();
+        long rejectedBefore = job.getRowsRejected();
+        BatchIngestResult result;
+        try {
+            source.skip(offset);
+            result = ingestService.ingest(userId, source, false, (consumed, accepted, rejected) ->
+                    importJobRepository.recordProgress(job.getId(), offset + consumed,
+                            acceptedBefore + accepted, rejectedBefore + rejected, LocalDateTime.now()));
+        } catch (IOException | RuntimeException e) {
+            // Зафиксированные порции сохранены; задачу можно продолжить с rowsConsumed
+            interrupt(job.getId(), e.toString());
+            log.warn("Import job {} interrupted: {}", job.getId(), e.toString());
+            throw e;
+        }
+
+        // Хвостовые отклонённые строки не попадают ни в одну порцию — итог считаем по результату
+        ImportJob done = importJobRepository.findById(job.getId()).orElseThrow();
+        done.setRowsConsumed(offset + result.accepted() + result.rejected());
+        done.setRowsAccepted(acceptedBefore + result.accepted());
+        done.setRowsRejected(rejectedBefore + result.rejected());
+        done.setStatus(ImportJob.Status.DONE);
+        done.setUpdatedAt(LocalDateTime.now());
+        done = importJobRepository.save(done);
+
+        List<BatchIngestResult.RowError> errors = result.errors().stream()
+                .map(e -> new BatchIngestResult.RowError(offset + e.index(), e.message()))
+                .toList();
+        long elapsedNanos = System.nanoTime() - started;
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        return new ImportResult(done, elapsedNanos / 1_000_000,
+                seconds > 0 ? result.accepted() / seconds : 0, errors);
+    }
+
+    private ImportJob createJob(Long userId, String fileName, String header) {
+        ImportJob job = new ImportJob();
+        job.setUserId(userId);
+        job.setStatus(ImportJob.Status.RUNNING);
+        job.setFileName(fileName);
+        job.setHeader(truncate(header));
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        return importJobRepository.save(job);
+    }
+
+    private ImportJob claimJob(Long userId, Long jobId, String header) {
+        ImportJob job = importJobRepository.findByIdAndUserId(jobId, userId)
+                .orElseThrow(() -> new IllegalArgumentException("Import job " + jobId + " not found"));
+        if (job.getStatus() == ImportJob.Status.DONE) {
+            throw new IllegalStateException("Import job " + jobId + " is already complete");
+        }
+        if (!truncate(header).equals(job.getHeader())) {
+            throw new IllegalArgumentException("File header does not match import job " + jobId);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (importJobRepository.claim(jobId, now, now.minus(staleAfter)) == 0) {
+            throw new IllegalStateException("Import job " + jobId + " is still running");
+        }
+        return importJobRepository.findById(jobId).orElseThrow();
+    }
+
+    private void interrupt(Long jobId, String error) {
+        ImportJob job = importJobRepository.findById(jobId).orElseThrow();
+        job.setStatus(ImportJob.Status.INTERRUPTED);
+        job.setLastError(truncate(error));
+        job.setUpdatedAt(LocalDateTime.now());
+        importJobRepository.save(job);
+    }
+
+    private static String truncate(String value) {
+        return value.length() > MAX_ERROR_LENGTH ? value.substring(0, MAX_ERROR_LENGTH) : value;
+    }
+}
@@ -0,0 +1,46 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.dto.TransactionView;
+import com.jcrpo.fieldcontrol.model.Transaction;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/** Запись журнала: проверенная операция с уже выданным id. seq — порядковый номер в журнале. */
+record JournalEntry(
+        long seq,
+        Long userId,
+        Long id,
+        long amountMinor,
+        String currency,
+        String type,
+        String category,
+        String description,
+        LocalDate date,
+        LocalDateTime timestamp
+) {
+
+    static JournalEntry of(long seq, Long userId, Transaction t) {
+        return new JournalEntry(seq, userId, t.getId(), t.getAmountMinor(), t.getCurrency(), t.getType(),
+                t.getCategory(), t.getDescription(), t.getDate(), t.getTimestamp());
+    }
+
+    TransactionView view() {
+        return new TransactionView(id, amountMinor, currency, category, description, type, date, timestamp);
+    }
+
+    /** Несохранённая сущность для агрегатов (user не заполняется). */
+    Transaction toTransaction(long version) {
+        Transaction t = new Transaction();
+        t.setId(id);
+        t.setAmountMinor(amountMinor);
+        t.setCurrency(currency);
+        t.setType(type);
+        t.setCategory(category);
+        t.setDescription(description);
+        t.setDate(date);
+        t.setTimestamp(timestamp);
+        t.setChangeVersion(version);
+        return t;
+    }
+}
@@ -0,0 +1,215 @@
+package com.jcrpo.fieldcontrol.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал на диске из сегментов journal-&lt;seq первой записи&gt;.log. Кадр записи:
+ * длина (int), CRC32 (int), данные. fsync групповой: запись, которую уже покрыл
+ * force другого потока, второй раз не синхронизируется.
+ */
+final class JournalFile implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+
+    private FileChannel active;
+    // Байты, записанные за время работы (сквозь сегменты), и сколько из них уже на диске
+    private long written;
+    private volatile long synced;
+
+    JournalFile(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Читает все сегменты по порядку и открывает последний на дозапись. Оборванный кадр
+     * в конце последнего сегмента (сбой во время записи, ответ клиенту не отправлялся)
+     * отрезается; повреждение в середине журнала — ошибка, данные не отбрасываются молча.
+     *
+     * @param nextSeq seq для нового сегмента, если журнал пуст
+     */
+    void recover(long nextSeq, Consumer<byte[]> consumer) throws IOException {
+        Files.createDirectories(dir);
+        List<Segment> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                found.add(new Segment(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), file));
+            }
+        }
+        found.sort(Comparator.comparingLong(Segment::firstSeq));
+        for (int i = 0; i < found.size(); i++) {
+            Segment segment = found.get(i);
+            boolean last = i == found.size() - 1;
+            try (FileChannel channel = FileChannel.open(segment.path(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long validEnd = scan(channel, consumer);
+                if (validEnd < channel.size()) {
+                    if (!last) {
+                        throw new IOException("Journal segment " + segment.path() + " is corrupt at byte " + validEnd);
+                    }
+                    channel.truncate(validEnd);
+                    channel.force(true);
+                }
+            }
+            segments.addLast(segment);
+        }
+        if (segments.isEmpty()) {
+            segments.addLast(new Segment(nextSeq, segmentPath(nextSeq)));
+        }
+        active = FileChannel.open(segments.getLast().path(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        active.position(active.size());
+    }
+
+    /** Дописывает кадр; возвращает позицию, которую нужно передать в {@link #sync}. */
+    long append(long seq, byte[] data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + data.length);
+        frame.putInt(data.length).putInt((int) crc.getValue()).put(data).flip();
+        synchronized (writeLock) {
+            if (active.position() >= segmentBytes) {
+                roll(seq);
+            }
+            long start = active.position();
+            try {
+                while (frame.hasRemaining()) {
+                    active.write(frame);
+                }
+            } catch (IOException e) {
+                // Недописанный кадр отрезаем, иначе следующие записи окажутся за повреждённым местом
+                active.truncate(start);
+                active.position(start);
+                throw e;
+            }
+            written += HEADER_BYTES + data.length;
+            return written;
+        }
+    }
+
+    /** Возвращается, когда всё записанное до position сброшено на диск. */
+    void sync(long position) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= position) {
+                return;
+            }
+            long upTo;
+            FileChannel channel;
+            synchronized (writeLock) {
+                upTo = written;
+                channel = active;
+            }
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // Сегмент закрыт при переключении, а перед закрытием он синхронизируется
+            }
+            synced = upTo;
+        }
+    }
+
+    /** Позиция, до которой записанное уже сброшено на диск. */
+    long synced() {
+        return synced;
+    }
+
+    /** Удаляет сегменты, все записи которых не больше appliedSeq. Текущий сегмент остаётся. */
+    void deleteThrough(long appliedSeq) throws IOException {
+        List<Path> obsolete = new ArrayList<>();
+        synchronized (writeLock) {
+            while (segments.size() > 1) {
+                Segment first = segments.pollFirst();
+                Segment next = segments.peekFirst();
+                if (next.firstSeq() - 1 > appliedSeq) {
+                    segments.addFirst(first);
+                    break;
+                }
+                obsolete.add(first.path());
+            }
+        }
+        for (Path path : obsolete) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (active != null) {
+                active.force(false);
+                active.close();
+            }
+        }
+    }
+
+    private void roll(long seq) throws IOException {
+        active.force(false);
+        active.close();
+        Segment segment = new Segment(seq, segmentPath(seq));
+        active = FileChannel.open(segment.path(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segments.addLast(segment);
+        // Новый файл должен пережить сбой вместе с записями в нём
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Не все ОС позволяют открыть каталог; запись в файл всё равно синхронизируется
+        }
+    }
+
+    private static long scan(FileChannel channel, Consumer<byte[]> consumer) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long position = 0;
+        long size = channel.size();
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || position + HEADER_BYTES + length > size) {
+                return position;
+            }
+            ByteBuffer data = ByteBuffer.allocate(length);
+            while (data.hasRemaining() && channel.read(data, position + HEADER_BYTES + data.position()) > 0) {
+                // дочитываем кадр
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data.array());
+            if ((int) crc.getValue() != checksum) {
+                return position;
+            }
+            consumer.accept(data.array());
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private Path segmentPath(long firstSeq) {
+        return dir.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX));
+    }
+
+    private record Segment(long firstSeq, Path path) {
+    }
+}
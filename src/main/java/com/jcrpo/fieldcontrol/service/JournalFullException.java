@@ -0,0 +1,9 @@
+package com.jcrpo.fieldcontrol.service;
+
+/** Журнал отстаёт от БД сильнее app.journal.max-lag: запись временно не принимается. */
+public class JournalFullException extends RuntimeException {
+
+    public JournalFullException(long lag) {
+        super("Transaction journal is " + lag + " entries behind the database, retry later");
+    }
+}
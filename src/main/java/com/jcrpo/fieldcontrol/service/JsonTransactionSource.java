@@ -0,0 +1,40 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jcrpo.fieldcontrol.model.Transaction;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Читает JSON-массив операций потоково: в памяти находится только текущий элемент. */
+public class JsonTransactionSource implements TransactionSource {
+
+    private final ObjectMapper objectMapper;
+    private final JsonParser parser;
+    private boolean started;
+
+    public JsonTransactionSource(ObjectMapper objectMapper, InputStream in) throws IOException {
+        this.objectMapper = objectMapper;
+        this.parser = objectMapper.createParser(in);
+    }
+
+    @Override
+    public Transaction next() throws IOException {
+        if (!started) {
+            started = true;
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of transactions");
+            }
+        }
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY || token == null) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a transaction object at " + parser.currentLocation());
+        }
+        return objectMapper.readValue(parser, Transaction.class);
+    }
+}
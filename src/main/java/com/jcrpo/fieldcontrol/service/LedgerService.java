@@ -0,0 +1,137 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jcrpo.fieldcontrol.dto.GoalView;
+import com.jcrpo.fieldcontrol.dto.LedgerRow;
+import com.jcrpo.fieldcontrol.model.UserBalance;
+import com.jcrpo.fieldcontrol.repository.ArchivedTransactionRepository;
+import com.jcrpo.fieldcontrol.repository.GoalRepository;
+import com.jcrpo.fieldcontrol.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Реестры счетов ({@link AccountLedger}) для недавно активных пользователей: строятся при
+ * первом чтении, вытесняются по LRU и времени простоя. Единичные изменения и пакеты журнала
+ * дописываются после фиксации транзакции; пакетная загрузка и удаление истории сбрасывают реестр.
+ * Перед использованием версия реестра сверяется с user_balance одним запросом по ключу,
+ * так что устаревший реестр (пропущенное событие, запись другим экземпляром) не читается.
+ */
+@Service
+public class LedgerService {
+
+    private final TransactionRepository transactionRepository;
+    private final ArchivedTransactionRepository archivedTransactionRepository;
+    private final GoalRepository goalRepository;
+    private final BalanceService balanceService;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<Long, AccountLedger> ledgers;
+    private final int maxRows;
+    private final Counter loads;
+
+    public LedgerService(TransactionRepository transactionRepository,
+                         ArchivedTransactionRepository archivedTransactionRepository,
+                         GoalRepository goalRepository,
+                         BalanceService balanceService,
+                         TransactionTemplate transactionTemplate,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.ledger.idle-ttl:PT30M}") Duration idleTtl,
+                         @Value("${app.ledger.max-accounts:1000}") int maxAccounts,
+                         @Value("${app.ledger.max-rows:200000}") int maxRows) {
+        this.transactionRepository = transactionRepository;
+        this.archivedTransactionRepository = archivedTransactionRepository;
+        this.goalRepository = goalRepository;
+        this.balanceService = balanceService;
+        this.transactionTemplate = transactionTemplate;
+        this.ledgers = Caffeine.newBuilder()
+                .expireAfterAccess(idleTtl)
+                .maximumSize(maxAccounts)
+                .recordStats()
+                .build();
+        this.maxRows = maxRows;
+        this.loads = Counter.builder("ledger.loads").description("Account ledgers built from the database")
+                .register(meterRegistry);
+        // Попадания, промахи, вытеснения и число реестров в памяти — cache.* с cache=ledgers
+        CaffeineCacheMetrics.monitor(meterRegistry, ledgers, "ledgers");
+    }
+
+    /**
+     * Реестр, совпадающий с текущей версией данных, или пусто, если счёт слишком велик
+     * для памяти или его история менялась во время загрузки — тогда читать из БД.
+     */
+    public Optional<AccountLedger> find(Long userId) {
+        long version = balanceService.getVersion(userId).version();
+        AccountLedger ledger = ledgers.getIfPresent(userId);
+        if (ledger != null && ledger.version() == version) {
+            return Optional.of(ledger);
+        }
+        ledger = load(userId);
+        if (ledger == null) {
+            ledgers.invalidate(userId);
+            return Optional.empty();
+        }
+        ledgers.put(userId, ledger);
+        return Optional.of(ledger);
+    }
+
+    @TransactionalEventListener
+    public void onDataChanged(DataChangedEvent event) {
+        AccountLedger ledger = ledgers.getIfPresent(event.userId());
+        if (ledger == null) {
+            return;
+        }
+        boolean applied = switch (event.kind()) {
+            case TRANSACTION -> ledger.apply(event.version(), event.transaction());
+            case GOAL -> ledger.apply(event.version(), event.goal());
+            case BULK -> event.transactions() != null && ledger.apply(event.version(), event.transactions());
+            case RESET -> false;
+        };
+        if (!applied) {
+            ledgers.invalidate(event.userId());
+        }
+    }
+
+    /**
+     * Версия читается до и после выборки строк: если они совпали, ни одно изменение
+     * не фиксировалось между чтениями (каждое повышает версию) и реестр согласован.
+     */
+    private AccountLedger load(Long userId) {
+        return transactionTemplate.execute(status -> {
+            UserBalance balance = balanceService.getBalance(userId);
+            if (balance.getTransactionCount() > maxRows) {
+                return null;
+            }
+            // Цель по id из той же строки баланса, мимо кэша целей: она согласована с версией
+            GoalView goal = balance.getGoalId() == null ? null
+                    : goalRepository.findById(balance.getGoalId()).map(GoalView::of).orElse(null);
+            AccountLedger ledger = new AccountLedger(balance.getDataVersion(), goal,
+                    balance.getGoalIncome(), balance.getGoalExpense(), (int) balance.getTransactionCount());
+            // Итоги считаются по всей истории, включая перенесённые в архив месяцы
+            try (Stream<LedgerRow> rows = Stream.concat(transactionRepository.streamLedgerRows(userId),
+                    archivedTransactionRepository.streamLedgerRows(userId))) {
+                Iterator<LedgerRow> it = rows.iterator();
+                while (it.hasNext()) {
+                    if (!ledger.add(it.next()) || ledger.size() > maxRows) {
+                        return null;
+                    }
+                }
+            }
+            if (balanceService.getVersion(userId).version() != balance.getDataVersion()) {
+                return null;
+            }
+            loads.increment();
+            return ledger;
+        });
+    }
+}
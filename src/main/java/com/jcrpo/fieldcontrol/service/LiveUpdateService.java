@@ -0,0 +1,392 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jcrpo.fieldcontrol.model.RateSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Поток событий (SSE) для открытых страниц: новые операции, смена цели, итоги, курсы.
+ * Публикующий поток только кладёт событие в очередь подписчика и не ждёт сеть;
+ * запись в соединения выполняют несколько потоков-отправителей. Очередь подписчика
+ * ограничена: при переполнении события отбрасываются и клиенту уходит resync — он
+ * догружает изменения через /api/data/changes. Пока событий нет, соединение держит
+ * только асинхронный запрос Tomcat, без потока.
+ * <p>
+ * Запись в сокет блокирующая: клиент, который не принимает данные дольше write-timeout,
+ * отключается, а пул отправителей на это время получает поток взамен занятого. Итоги
+ * считаются в своём пуле и не чаще одного расчёта на пользователя за раз.
+ */
+@Service
+public class LiveUpdateService {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveUpdateService.class);
+
+    private static final long IDLE = 0;
+    private static final long STALLED = Long.MIN_VALUE;
+
+    private final ObjectMapper objectMapper;
+    private final DataService dataService;
+    private final long timeoutMillis;
+    private final int bufferSize;
+    private final int maxConnectionsPerUser;
+    private final int senderThreads;
+    private final long writeTimeoutNanos;
+
+    private final Map<Long, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    // Пользователь -> наибольшая версия, для которой ещё не отправлены итоги
+    private final Map<Long, Long> pendingSummaries = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger stalledWriters = new AtomicInteger();
+    private final ThreadPoolExecutor sender;
+    private final ExecutorService summaries;
+    private final Counter droppedEvents;
+    private final Counter evictedClients;
+
+    public LiveUpdateService(ObjectMapper objectMapper,
+                             DataService dataService,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.live.timeout:PT30M}") Duration timeout,
+                             @Value("${app.live.buffer-size:64}") int bufferSize,
+                             @Value("${app.live.max-connections-per-user:5}") int maxConnectionsPerUser,
+                             @Value("${app.live.sender-threads:4}") int senderThreads,
+                             @Value("${app.live.write-timeout:PT10S}") Duration writeTimeout,
+                             @Value("${app.live.summary-threads:2}") int summaryThreads) {
+        this.objectMapper = objectMapper;
+        this.dataService = dataService;
+        this.timeoutMillis = timeout.toMillis();
+        this.bufferSize = bufferSize;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.senderThreads = senderThreads;
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("live-sender-"));
+        this.summaries = Executors.newFixedThreadPool(summaryThreads, daemonThreads("live-summary-"));
+        this.droppedEvents = Counter.builder("live.events.dropped")
+                .description("Events dropped because a client's buffer was full").register(meterRegistry);
+        this.evictedClients = Counter.builder("live.clients.evicted")
+                .description("Connections closed after a failed write or connection limit").register(meterRegistry);
+        Gauge.builder("live.connections", connectionCount, AtomicInteger::get)
+                .description("Open live update connections").register(meterRegistry);
+    }
+
+    /** Новое подключение; первое событие ready сообщает текущую версию данных. */
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        List<Subscriber> userSubscribers = subscribers.computeIfAbsent(userId, id -> new CopyOnWriteArrayList<>());
+        userSubscribers.add(subscriber);
+        connectionCount.incrementAndGet();
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        // Слишком много вкладок одного пользователя: закрываем самую старую. Emitter закрывает
+        // поток-отправитель: методы SseEmitter синхронизированы, и зависшая запись старой вкладки
+        // задержала бы здесь запрос новой
+        while (userSubscribers.size() > maxConnectionsPerUser) {
+            Subscriber oldest = userSubscribers.get(0);
+            evictedClients.increment();
+            remove(oldest);
+            oldest.evict();
+        }
+        long version = dataService.getDataVersion(userId).version();
+        subscriber.offer(LiveEvent.data("ready", version, toJson(Map.of("version", version))));
+        return emitter;
+    }
+
+    @TransactionalEventListener
+    public void onDataChanged(DataChangedEvent event) {
+        List<Subscriber> targets = subscribers.get(event.userId());
+        if (targets == null || targets.isEmpty()) {
+            return;
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("version", event.version());
+        String name = switch (event.kind()) {
+            case TRANSACTION -> {
+                payload.put("transaction", event.transaction());
+                yield "transaction";
+            }
+            case GOAL -> {
+                payload.put("goal", event.goal());
+                yield "goal";
+            }
+            case BULK -> {
+                payload.put("count", event.count());
+                yield "resync";
+            }
+            case RESET -> "reset";
+        };
+        broadcast(targets, LiveEvent.data(name, event.version(), toJson(payload)));
+        scheduleSummary(event.userId(), event.version());
+    }
+
+    /**
+     * Итоги читаются уже после фиксации, вне потоков-отправителей. Изменения, пришедшие,
+     * пока расчёт пользователя ждёт в очереди, сливаются в него: пакет из тысячи событий
+     * даёт один-два расчёта, а не тысячу.
+     */
+    private void scheduleSummary(Long userId, long version) {
+        boolean[] schedule = {false};
+        pendingSummaries.compute(userId, (id, pending) -> {
+            if (pending == null) {
+                schedule[0] = true;
+                return version;
+            }
+            return Math.max(pending, version);
+        });
+        if (schedule[0]) {
+            summaries.execute(() -> pushSummary(userId));
+        }
+    }
+
+    private void pushSummary(Long userId) {
+        // Снимаем отметку до чтения: всё, что зафиксировано позже, запланирует следующий расчёт
+        Long version = pendingSummaries.remove(userId);
+        List<Subscriber> targets = subscribers.get(userId);
+        if (version == null || targets == null || targets.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, Object> balance = Map.of(
+                    "version", version,
+                    "summary", dataService.getSummary(userId, null));
+            broadcast(targets, LiveEvent.data("balance", version, toJson(balance)));
+        } catch (RuntimeException e) {
+            log.warn("Could not push balance to user {}: {}", userId, e.toString());
+        }
+    }
+
+    /** Курсы одинаковы для всех: событие сериализуется один раз. Клиент перечитает /api/currency по ETag. */
+    @EventListener
+    public void onRatesRefreshed(RatesRefreshedEvent event) {
+        RateSnapshot snapshot = event.snapshot();
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("updatedAt", snapshot.getUpdatedAt());
+        payload.put("etag", snapshot.getEtag());
+        LiveEvent rates = LiveEvent.data("rates", null, toJson(payload));
+        subscribers.values().forEach(list -> broadcast(list, rates));
+    }
+
+    /** Комментарий-пульс держит соединение через прокси и выявляет отключившихся клиентов. */
+    @Scheduled(fixedDelayString = "${app.live.heartbeat:PT25S}")
+    public void heartbeat() {
+        subscribers.values().forEach(list -> broadcast(list, LiveEvent.HEARTBEAT));
+    }
+
+    /**
+     * Отключает клиентов, запись которым идёт дольше write-timeout. Emitter закрывает поток-отправитель,
+     * когда зависшая запись вернётся (не позже таймаута записи Tomcat): методы SseEmitter
+     * синхронизированы, и вызов отсюда встал бы за ней.
+     */
+    @Scheduled(fixedDelayString = "${app.live.write-check:PT1S}")
+    public void evictStalledWriters() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(list -> list.forEach(subscriber -> {
+            long started = subscriber.writeStarted.get();
+            if (started != IDLE && started != STALLED && now - started > writeTimeoutNanos
+                    && subscriber.writeStarted.compareAndSet(started, STALLED)) {
+                log.debug("Live update write to user {} timed out", subscriber.userId);
+                evictedClients.increment();
+                remove(subscriber);
+                stalledWriters.incrementAndGet();
+                resizeSender();
+            }
+        }));
+    }
+
+    /** Зависшие записи не отнимают потоки у остальных клиентов. */
+    private synchronized void resizeSender() {
+        int size = senderThreads + Math.max(stalledWriters.get(), 0);
+        if (size > sender.getMaximumPoolSize()) {
+            sender.setMaximumPoolSize(size);
+            sender.setCorePoolSize(size);
+        } else {
+            sender.setCorePoolSize(size);
+            sender.setMaximumPoolSize(size);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.values().forEach(list -> list.forEach(s -> s.emitter.complete()));
+        sender.shutdown();
+        summaries.shutdown();
+    }
+
+    private void broadcast(List<Subscriber> targets, LiveEvent event) {
+        for (Subscriber subscriber : targets) {
+            subscriber.offer(event);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        connectionCount.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.userId, (id, list) -> {
+            list.remove(subscriber);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize live event", e);
+        }
+    }
+
+    private record LiveEvent(String name, Long id, String json) {
+
+        static final LiveEvent HEARTBEAT = new LiveEvent(null, null, null);
+        static final LiveEvent RESYNC = new LiveEvent("resync", null, "{}");
+
+        static LiveEvent data(String name, Long id, String json) {
+            return new LiveEvent(name, id, json);
+        }
+
+        // Билдер одноразовый (build() дописывает разделитель), поэтому создаётся на каждую отправку
+        SseEmitter.SseEventBuilder toSse() {
+            if (name == null) {
+                return SseEmitter.event().comment("hb");
+            }
+            SseEmitter.SseEventBuilder builder = SseEmitter.event().name(name);
+            if (id != null) {
+                builder.id(Long.toString(id));
+            }
+            return builder.data(json, MediaType.APPLICATION_JSON);
+        }
+    }
+
+    private final class Subscriber {
+        final Long userId;
+        final SseEmitter emitter;
+        final Queue<LiveEvent> queue = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicBoolean overflowed = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        final AtomicBoolean stalled = new AtomicBoolean();
+        // Вытеснен новой вкладкой; emitter закроет drain
+        final AtomicBoolean evicted = new AtomicBoolean();
+        // System.nanoTime() начала текущей записи; IDLE — запись не идёт, STALLED — отключён по таймауту
+        final AtomicLong writeStarted = new AtomicLong(IDLE);
+
+        Subscriber(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        void offer(LiveEvent event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                // Клиент не успевает читать: дальнейшие события бессмысленны, нужна полная сверка
+                droppedEvents.increment(queue.size() + 1);
+                queue.clear();
+                overflowed.set(true);
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        void evict() {
+            evicted.set(true);
+            if (scheduled.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        void drain() {
+            try {
+                if (overflowed.getAndSet(false) && !closed.get()) {
+                    send(LiveEvent.RESYNC);
+                }
+                LiveEvent event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Клиент отключился или соединение уже закрыто
+                if (!stalled.get()) {
+                    evictedClients.increment();
+                    remove(this);
+                }
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            if (stalled.get()) {
+                emitter.completeWithError(new IOException("Live update write timed out"));
+                return;
+            }
+            if (evicted.compareAndSet(true, false)) {
+                emitter.complete();
+                return;
+            }
+            if (!queue.isEmpty() && !closed.get() && scheduled.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void send(LiveEvent event) throws IOException {
+            writeStarted.set(System.nanoTime());
+            try {
+                emitter.send(event.toSse());
+            } finally {
+                // Кто первым сменил отметку — запись или проверка таймаута, — тот и ведёт учёт
+                if (writeStarted.getAndSet(IDLE) == STALLED) {
+                    stalled.set(true);
+                    stalledWriters.decrementAndGet();
+                    resizeSender();
+                }
+            }
+        }
+    }
+}
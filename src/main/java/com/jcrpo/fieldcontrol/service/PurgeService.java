@@ -0,0 +1,125 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.model.PurgeJob;
+import com.jcrpo.fieldcontrol.repository.ArchivedTransactionRepository;
+import com.jcrpo.fieldcontrol.repository.GoalRepository;
+import com.jcrpo.fieldcontrol.repository.PurgeJobRepository;
+import com.jcrpo.fieldcontrol.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Асинхронное удаление цели и истории: цель удаляется и история скрывается сразу,
+ * а сами строки фоновая задача удаляет порциями, каждая в своей короткой транзакции —
+ * сначала из живых секций, затем из архива.
+ * <p>
+ * Граница удаления — версия данных, а не id: id выдаются блоками на экземпляр и фиксируются
+ * не по порядку, а версия выдаётся под блокировкой строки user_balance. Обнуление итогов берёт
+ * ту же блокировку, поэтому всё, что вошло в обнулённый баланс, имеет версию меньше resetVersion,
+ * а всё записанное позже — не меньше.
+ */
+@Service
+public class PurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(PurgeService.class);
+
+    private final PurgeJobRepository purgeJobRepository;
+    private final TransactionRepository transactionRepository;
+    private final ArchivedTransactionRepository archivedTransactionRepository;
+    private final GoalRepository goalRepository;
+    private final BalanceService balanceService;
+    private final AnalyticsService analyticsService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+
+    public PurgeService(PurgeJobRepository purgeJobRepository,
+                        TransactionRepository transactionRepository,
+                        ArchivedTransactionRepository archivedTransactionRepository,
+                        GoalRepository goalRepository,
+                        BalanceService balanceService,
+                        AnalyticsService analyticsService,
+                        TransactionTemplate transactionTemplate,
+                        ApplicationEventPublisher eventPublisher,
+                        @Value("${app.purge.batch-size:5000}") int batchSize) {
+        this.purgeJobRepository = purgeJobRepository;
+        this.transactionRepository = transactionRepository;
+        this.archivedTransactionRepository = archivedTransactionRepository;
+        this.goalRepository = goalRepository;
+        this.balanceService = balanceService;
+        this.analyticsService = analyticsService;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+    }
+
+    @Transactional
+    public PurgeJob requestPurge(Long userId) {
+        // Оценка объёма для прогресса задачи; граница удаления — версия, а не это число
+        long totalRows = balanceService.getBalance(userId).getTransactionCount();
+        goalRepository.deleteByUserId(userId);
+        long version = balanceService.reset(userId);
+        analyticsService.deleteForUser(userId);
+        eventPublisher.publishEvent(DataChangedEvent.reset(userId, version));
+
+        PurgeJob job = new PurgeJob();
+        job.setUserId(userId);
+        job.setResetVersion(version);
+        job.setTotalRows(totalRows);
+        job.setStatus(PurgeJob.Status.PENDING);
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        return purgeJobRepository.save(job);
+    }
+
+    public Optional<PurgeJob> getJob(Long userId, Long jobId) {
+        return purgeJobRepository.findByIdAndUserId(jobId, userId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.purge.poll-interval:PT2S}")
+    public void processPending() {
+        for (PurgeJob job : purgeJobRepository.findTop10ByStatusOrderByIdAsc(PurgeJob.Status.PENDING)) {
+            try {
+                runJob(job.getId());
+            } catch (RuntimeException e) {
+                // Задача останется PENDING и продолжится на следующем проходе
+                log.warn("Purge job {} interrupted: {}", job.getId(), e.toString());
+            }
+        }
+    }
+
+    private void runJob(Long jobId) {
+        boolean done = false;
+        while (!done) {
+            done = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                // Задачу уже ведёт другой экземпляр или она завершена — этот проход её пропускает
+                PurgeJob job = purgeJobRepository.lockPending(jobId).orElse(null);
+                if (job == null) {
+                    return true;
+                }
+                int deleted = transactionRepository.deleteBatch(job.getUserId(), job.getResetVersion(), batchSize);
+                // Живые секции исчерпаны — добираем порцию из холодной истории
+                if (deleted < batchSize) {
+                    deleted += archivedTransactionRepository.deleteBatch(job.getUserId(), job.getResetVersion(),
+                            batchSize - deleted);
+                }
+                job.setDeletedRows(job.getDeletedRows() + deleted);
+                job.setUpdatedAt(LocalDateTime.now());
+                if (deleted < batchSize) {
+                    job.setStatus(PurgeJob.Status.DONE);
+                    log.info("Purge job {} finished: {} rows removed", jobId, job.getDeletedRows());
+                }
+                return job.getStatus() == PurgeJob.Status.DONE;
+            }));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.model.RateSnapshot;
+
+import java.io.IOException;
+
+/** Источник актуальных курсов. Реализация выбирается свойством app.currency.provider. */
+public interface RateProvider {
+
+    RateSnapshot fetchLatest() throws IOException;
+}
@@ -0,0 +1,7 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.model.RateSnapshot;
+
+/** Получены новые курсы (публикуется только при фактическом изменении). */
+public record RatesRefreshedEvent(RateSnapshot snapshot) {
+}
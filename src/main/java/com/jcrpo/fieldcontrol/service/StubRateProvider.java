@@ -0,0 +1,25 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.model.RateSnapshot;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+
+/** Локальные фиксированные курсы без обращения в сеть (app.currency.provider=stub) — для тестов и офлайн-разработки. */
+@Component
+@ConditionalOnProperty(name = "app.currency.provider", havingValue = "stub")
+public class StubRateProvider implements RateProvider {
+
+    private static final Map<String, double[]> RATES = Map.of(
+            "USD", new double[]{3.2000, 3.2500},
+            "EUR", new double[]{3.4500, 3.5200},
+            "RUB", new double[]{0.0350, 0.0365},
+            "CNY", new double[]{0.4400, 0.4600});
+
+    @Override
+    public RateSnapshot fetchLatest() {
+        return RateSnapshot.of(RATES, Instant.now());
+    }
+}
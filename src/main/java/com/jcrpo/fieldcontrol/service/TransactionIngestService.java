@@ -0,0 +1,348 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.dto.BatchIngestResult;
+import com.jcrpo.fieldcontrol.model.Money;
+import com.jcrpo.fieldcontrol.model.Transaction;
+import com.jcrpo.fieldcontrol.model.User;
+import com.jcrpo.fieldcontrol.repository.GoalRepository;
+import com.jcrpo.fieldcontrol.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакетная загрузка операций. Строки читаются и проверяются по одной, пишутся порциями.
+ * На PostgreSQL порция уходит одним COPY через CopyManager драйвера; на других соединениях
+ * (и при app.ingest.copy=false) — через JDBC batch (hibernate.jdbc.batch_size).
+ * Идентификаторы в обоих случаях из пула последовательности. Баланс обновляется одним
+ * UPDATE на порцию.
+ */
+@Service
+public class TransactionIngestService {
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final String COPY = "copy transaction (id, amount_minor, currency, category, description, type, "
+            + "date, timestamp, change_version, user_id) from stdin (format csv)";
+
+    private final UserRepository userRepository;
+    private final GoalRepository goalRepository;
+    private final BalanceService balanceService;
+    private final AnalyticsService analyticsService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkSize;
+    private final boolean copy;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public TransactionIngestService(UserRepository userRepository,
+                                    GoalRepository goalRepository,
+                                    BalanceService balanceService,
+                                    AnalyticsService analyticsService,
+                                    TransactionTemplate transactionTemplate,
+                                    ApplicationEventPublisher eventPublisher,
+                                    JdbcTemplate jdbcTemplate,
+                                    @Value("${app.ingest.chunk-size:1000}") int chunkSize,
+                                    @Value("${app.ingest.copy:true}") boolean copy) {
+        this.userRepository = userRepository;
+        this.goalRepository = goalRepository;
+        this.balanceService = balanceService;
+        this.analyticsService = analyticsService;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = chunkSize;
+        this.copy = copy;
+    }
+
+    /**
+     * Вызывается внутри транзакции каждой порции: сохранённый прогресс фиксируется
+     * вместе с самими строками, поэтому прерванную загрузку можно продолжить без дублей.
+     */
+    @FunctionalInterface
+    public interface ChunkListener {
+        /** @param rowsConsumed строк источника прочитано (включая отклонённые) */
+        void chunkCommitted(long rowsConsumed, long accepted, long rejected);
+    }
+
+    /**
+     * @param atomic true — всё или ничего: первая некорректная строка отменяет загрузку;
+     *               false — каждая порция фиксируется отдельно, некорректные строки пропускаются.
+     */
+    public BatchIngestResult ingest(Long userId, TransactionSource source, boolean atomic) throws IOException {
+        return ingest(userId, source, atomic, (consumed, accepted, rejected) -> {
+        });
+    }
+
+    public BatchIngestResult ingest(Long userId, TransactionSource source, boolean atomic,
+                                    ChunkListener listener) throws IOException {
+        long started = System.nanoTime();
+        IngestRun run = new IngestRun(listener);
+        try {
+            if (atomic) {
+                transactionTemplate.executeWithoutResult(status -> drain(userId, source, run, true));
+            } else {
+                drain(userId, source, run, false);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RejectedBatchException e) {
+            // Транзакция откачена целиком — ничего не записано
+            run.accepted = 0;
+            run.chunks = 0;
+            run.committed = false;
+        }
+        long elapsedNanos = System.nanoTime() - started;
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        return new BatchIngestResult(
+                run.committed,
+                run.accepted,
+                run.rejected,
+                run.chunks,
+                elapsedNanos / 1_000_000,
+                seconds > 0 ? run.accepted / seconds : 0,
+                run.errors);
+    }
+
+    private void drain(Long userId, TransactionSource source, IngestRun run, boolean atomic) {
+        List<Transaction> chunk = new ArrayList<>(chunkSize);
+        // Номера строк источника для операций порции — для отказов при повторной проверке валюты
+        List<Long> rows = new ArrayList<>(chunkSize);
+        // Ранний отсев без блокировки; окончательно валюта сверяется в writeChunk
+        String accountCurrency = goalRepository.findCurrency(userId);
+        long index = 0;
+        try {
+            for (Transaction transaction = source.next(); transaction != null; transaction = source.next(), index++) {
+                String error = validate(transaction);
+                if (error == null) {
+                    error = checkCurrency(transaction, accountCurrency);
+                }
+                if (error != null) {
+                    run.reject(index, error);
+                    if (atomic) {
+                        throw new RejectedBatchException();
+                    }
+                    continue;
+                }
+                chunk.add(transaction);
+                rows.add(index);
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(userId, chunk, rows, run, atomic, index + 1);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(userId, chunk, rows, run, atomic, index);
+        }
+    }
+
+    private void writeChunk(Long userId, List<Transaction> chunk, List<Long> rows, IngestRun run, boolean atomic,
+                            long rowsConsumed) {
+        // В атомарном режиме присоединяется к внешней транзакции, иначе открывает свою
+        transactionTemplate.executeWithoutResult(status -> {
+            User userRef = userRepository.getReferenceById(userId);
+            long version = balanceService.nextVersion(userId);
+            // Валюта учёта читается под блокировкой строки баланса, которую берёт и смена цели
+            String accountCurrency = goalRepository.findCurrency(userId);
+            int kept = 0;
+            for (int i = 0; i < chunk.size(); i++) {
+                String error = checkCurrency(chunk.get(i), accountCurrency);
+                if (error != null) {
+                    run.reject(rows.get(i), error);
+                    if (atomic) {
+                        throw new RejectedBatchException();
+                    }
+                    continue;
+                }
+                chunk.set(kept, chunk.get(i));
+                rows.set(kept++, rows.get(i));
+            }
+            chunk.subList(kept, chunk.size()).clear();
+            rows.subList(kept, rows.size()).clear();
+            if (chunk.isEmpty()) {
+                return;
+            }
+            long income = 0;
+            long expense = 0;
+            for (Transaction transaction : chunk) {
+                transaction.setUser(userRef);
+                transaction.setChangeVersion(version);
+                if ("INCOME".equals(transaction.getType())) {
+                    income += transaction.getAmountMinor();
+                } else {
+                    expense += transaction.getAmountMinor();
+                }
+            }
+            if (!copy || !copyChunk(userId, chunk)) {
+                chunk.forEach(entityManager::persist);
+                entityManager.flush();
+                entityManager.clear();
+            }
+            balanceService.applyDelta(userId, income, expense, chunk.size());
+            analyticsService.recordTransactions(userId, chunk);
+            eventPublisher.publishEvent(DataChangedEvent.bulk(userId, version, chunk.size()));
+            run.listener.chunkCommitted(rowsConsumed, run.accepted + chunk.size(), run.rejected);
+        });
+        if (!chunk.isEmpty()) {
+            run.accepted += chunk.size();
+            run.chunks++;
+        }
+        chunk.clear();
+        rows.clear();
+    }
+
+    /**
+     * Пишет порцию одним COPY в соединении текущей транзакции; false — соединение не PostgreSQL.
+     * Строки COPY в формате csv: пустое поле без кавычек — NULL, текст всегда в кавычках.
+     */
+    private boolean copyChunk(Long userId, List<Transaction> chunk) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                return false;
+            }
+            assignIds(chunk);
+            StringBuilder rows = new StringBuilder(chunk.size() * 96);
+            for (Transaction t : chunk) {
+                rows.append(t.getId()).append(',').append(t.getAmountMinor()).append(',');
+                appendText(rows, t.getCurrency()).append(',');
+                appendText(rows, t.getCategory()).append(',');
+                appendText(rows, t.getDescription()).append(',');
+                appendText(rows, t.getType()).append(',');
+                rows.append(t.getDate()).append(',').append(t.getTimestamp()).append(',')
+                        .append(t.getChangeVersion()).append(',').append(userId).append('\n');
+            }
+            try {
+                connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY, new StringReader(rows.toString()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }));
+    }
+
+    /** nextval = v выделяет блок [v - 49, v] — тот же пул, из которого берёт id Hibernate. */
+    private void assignIds(List<Transaction> chunk) {
+        int blocks = (chunk.size() + Transaction.ID_ALLOCATION_SIZE - 1) / Transaction.ID_ALLOCATION_SIZE;
+        int index = 0;
+        while (index < chunk.size()) {
+            for (Long hi : jdbcTemplate.queryForList("select nextval('transaction_seq') from generate_series(1, ?)",
+                    Long.class, blocks)) {
+                if (hi < Transaction.ID_ALLOCATION_SIZE) {
+                    continue; // первые значения последовательности не образуют полного блока
+                }
+                for (long id = hi - Transaction.ID_ALLOCATION_SIZE + 1; id <= hi && index < chunk.size(); id++) {
+                    chunk.get(index++).setId(id);
+                }
+            }
+        }
+    }
+
+    private static StringBuilder appendText(StringBuilder rows, String value) {
+        if (value != null) {
+            rows.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+        return rows;
+    }
+
+    /** Проверяет и нормализует строку; возвращает текст ошибки или null. */
+    static String validate(Transaction transaction) {
+        transaction.setId(null);
+        String type = transaction.getType() == null ? null : transaction.getType().trim().toUpperCase();
+        if (!"INCOME".equals(type) && !"EXPENSE".equals(type)) {
+            return "type must be INCOME or EXPENSE";
+        }
+        transaction.setType(type);
+        if (transaction.getAmountMinor() <= 0) {
+            return "amount must be a positive number";
+        }
+        if (transaction.getCurrency() != null) {
+            String currency = Money.currencyCode(transaction.getCurrency());
+            if (currency == null) {
+                return "currency must be a three-letter ISO 4217 code";
+            }
+            transaction.setCurrency(currency);
+        }
+        if (tooLong(transaction.getCategory()) || tooLong(transaction.getDescription())) {
+            return "category and description must be at most " + MAX_TEXT_LENGTH + " characters";
+        }
+        fillDates(transaction);
+        return null;
+    }
+
+    /**
+     * Выгрузки банков несут свои даты; недостающее дополняем. Дата — ключ секционирования,
+     * время — ключ курсора истории, оба обязательны (V7).
+     */
+    static void fillDates(Transaction transaction) {
+        LocalDateTime timestamp = transaction.getTimestamp();
+        LocalDate date = transaction.getDate();
+        if (timestamp == null) {
+            timestamp = date != null ? date.atStartOfDay() : LocalDateTime.now();
+        }
+        transaction.setTimestamp(timestamp);
+        transaction.setDate(date != null ? date : timestamp.toLocalDate());
+    }
+
+    /**
+     * Итоги, агрегаты и реестр счёта складывают суммы без пересчёта, поэтому все операции
+     * пользователя — в валюте учёта (валюте цели или базовой). Без валюты операция получает её,
+     * с другой валютой отклоняется. Возвращает текст ошибки или null.
+     */
+    static String checkCurrency(Transaction transaction, String accountCurrency) {
+        if (transaction.getCurrency() == null) {
+            transaction.setCurrency(accountCurrency);
+            return null;
+        }
+        return transaction.getCurrency().equals(accountCurrency) ? null
+                : "currency must be " + accountCurrency + ", the currency the account is kept in";
+    }
+
+    private static boolean tooLong(String value) {
+        return value != null && value.length() > MAX_TEXT_LENGTH;
+    }
+
+    private static final class IngestRun {
+        final ChunkListener listener;
+        boolean committed = true;
+        long accepted;
+        long rejected;
+        int chunks;
+        final List<BatchIngestResult.RowError> errors = new ArrayList<>();
+
+        IngestRun(ChunkListener listener) {
+            this.listener = listener;
+        }
+
+        void reject(long index, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new BatchIngestResult.RowError(index, message));
+            }
+        }
+    }
+
+    private static final class RejectedBatchException extends RuntimeException {
+        RejectedBatchException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,677 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jcrpo.fieldcontrol.dto.TransactionView;
+import com.jcrpo.fieldcontrol.model.JournalCheckpoint;
+import com.jcrpo.fieldcontrol.model.Transaction;
+import com.jcrpo.fieldcontrol.repository.GoalRepository;
+import com.jcrpo.fieldcontrol.repository.JournalCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Журнал операций с отложенной записью в БД (app.journal.enabled). Операция проверяется,
+ * получает id из transaction_seq, дописывается в файл журнала и после fsync считается
+ * принятой; фоновый поток переносит журнал в БД большими пакетами. Контрольная точка
+ * сдвигается в той же транзакции, что и вставка пакета, поэтому после сбоя журнал
+ * воспроизводится ровно с первой неприменённой записи. Если отставание достигает max-lag,
+ * запись ждёт до backpressure-wait и получает отказ (503).
+ * <p>
+ * Контрольная точка принадлежит узлу (app.journal.node-id) вместе с его каталогом журнала.
+ * Пока журнал открыт, узел держит сессионную advisory-блокировку по этому ключу: второй
+ * процесс с тем же node-id не стартует, а не применяет чужой журнал и не теряет записи.
+ * <p>
+ * Неприменённые операции видны чтениям пользователя через {@link #snapshot} и {@link #pending}.
+ * Общей блокировки на время чтения БД нет: запись, попавшую в БД, читатель отсеивает
+ * по id или по версии данных, в которой пакет её записал.
+ */
+@Service
+public class TransactionJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionJournal.class);
+
+    private static final String INSERT = "insert into transaction (id, amount_minor, currency, category, description, " +
+            "type, date, timestamp, change_version, user_id) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final long FAILURE_BACKOFF_MILLIS = 1000;
+    private static final String OWNER_LOCK = "select pg_try_advisory_lock(hashtext('journal:' || ?))";
+
+    private final boolean enabled;
+    private final Path dir;
+    private final String nodeId;
+    private final long segmentBytes;
+    private final int maxLag;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long backpressureWaitNanos;
+
+    private final ObjectMapper objectMapper;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BalanceService balanceService;
+    private final AnalyticsService analyticsService;
+    private final GoalRepository goalRepository;
+    private final JournalCheckpointRepository checkpointRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Очередь неприменённых записей и счётчик seq; всё под lock. Запись попадает в queue
+    // только после fsync, до этого она ждёт в unsynced в порядке seq
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    private final Deque<Written> unsynced = new ArrayDeque<>();
+    private final Map<Long, Deque<Pending>> pendingByUser = new HashMap<>();
+    private long nextSeq;
+    private volatile long appliedSeq;
+
+    // Текущий блок id из transaction_seq; под idLock
+    private final Object idLock = new Object();
+    private long nextId;
+    private long idLimit = -1;
+
+    private final Counter appends;
+    private final Counter rejected;
+    private final Counter discarded;
+    private final Counter flushFailures;
+    private final Timer fsyncTime;
+    private final Timer flushTime;
+
+    private JournalFile file;
+    // Соединение вне пула транзакций: держит advisory-блокировку узла, пока журнал открыт
+    private Connection owner;
+    private Thread writer;
+    private volatile boolean running;
+    // fsync не удался: состояние файла неизвестно, новые записи не принимаются до перезапуска
+    private boolean syncFailed;
+
+    public TransactionJournal(ObjectMapper objectMapper,
+                              DataSource dataSource,
+                              JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              BalanceService balanceService,
+                              AnalyticsService analyticsService,
+                              GoalRepository goalRepository,
+                              JournalCheckpointRepository checkpointRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.journal.enabled:false}") boolean enabled,
+                              @Value("${app.journal.dir:data/journal}") Path dir,
+                              @Value("${app.journal.node-id:}") String nodeId,
+                              @Value("${app.journal.segment-size:64MB}") DataSize segmentSize,
+                              @Value("${app.journal.max-lag:50000}") int maxLag,
+                              @Value("${app.journal.batch-size:2000}") int batchSize,
+                              @Value("${app.journal.flush-interval:PT0.2S}") Duration flushInterval,
+                              @Value("${app.journal.backpressure-wait:PT2S}") Duration backpressureWait) {
+        this.objectMapper = objectMapper;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.balanceService = balanceService;
+        this.analyticsService = analyticsService;
+        this.goalRepository = goalRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.dir = dir;
+        this.nodeId = nodeId == null ? "" : nodeId.trim();
+        this.segmentBytes = segmentSize.toBytes();
+        this.maxLag = maxLag;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.backpressureWaitNanos = backpressureWait.toNanos();
+        this.appends = Counter.builder("journal.appends")
+                .description("Transactions accepted into the journal").register(meterRegistry);
+        this.rejected = Counter.builder("journal.rejected")
+                .description("Transactions rejected because the journal lag was too large").register(meterRegistry);
+        this.discarded = Counter.builder("journal.discarded")
+                .description("Accepted transactions dropped on apply because the account currency changed")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("journal.flush.failures")
+                .description("Failed attempts to apply a journal batch").register(meterRegistry);
+        this.fsyncTime = Timer.builder("journal.fsync")
+                .description("Time to make a journal append durable").publishPercentileHistogram()
+                .register(meterRegistry);
+        this.flushTime = Timer.builder("journal.flush")
+                .description("Time to apply one journal batch to the database").publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("journal.lag.entries", this::lag)
+                .description("Journal entries not yet applied to the database").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Занимает контрольную точку узла, читает журнал с неё и запускает перенос в БД.
+     *
+     * @throws IllegalStateException node-id не задан или журнал узла уже открыт другим процессом
+     */
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        acquireOwnership();
+        JournalCheckpoint checkpoint = transactionTemplate.execute(status -> checkpointRepository.findById(nodeId)
+                .orElseGet(() -> {
+                    JournalCheckpoint created = new JournalCheckpoint();
+                    created.setName(nodeId);
+                    created.setUpdatedAt(LocalDateTime.now());
+                    return checkpointRepository.save(created);
+                }));
+        appliedSeq = checkpoint.getAppliedSeq();
+        nextSeq = appliedSeq + 1;
+        file = new JournalFile(dir, segmentBytes);
+        file.recover(nextSeq, data -> {
+            JournalEntry entry;
+            try {
+                entry = objectMapper.readValue(data, JournalEntry.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            nextSeq = Math.max(nextSeq, entry.seq() + 1);
+            if (entry.seq() > appliedSeq) {
+                enqueue(entry);
+            }
+        });
+        if (!queue.isEmpty()) {
+            log.info("Replaying {} journal entries after seq {}", queue.size(), appliedSeq);
+        }
+        running = true;
+        writer = new Thread(this::runWriter, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Недописанное остаётся в файле и будет применено при следующем запуске. */
+    @PreDestroy
+    void stop() throws IOException, InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        lock.lock();
+        try {
+            batchReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        file.close();
+        releaseOwnership();
+    }
+
+    /**
+     * Общий ключ у нескольких процессов ломает журнал: контрольная точка одного опережает
+     * записи другого, и тот либо не может применить пакет, либо при восстановлении пропускает
+     * принятые операции. Поэтому ключ обязателен, а занятый — ошибка запуска.
+     */
+    private void acquireOwnership() {
+        if (nodeId.isEmpty()) {
+            throw new IllegalStateException("app.journal.node-id must be set to a key unique to this instance "
+                    + "when app.journal.enabled=true");
+        }
+        try {
+            owner = dataSource.getConnection();
+            owner.setAutoCommit(true);
+            try (PreparedStatement statement = owner.prepareStatement(OWNER_LOCK)) {
+                statement.setString(1, nodeId);
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (rs.next() && rs.getBoolean(1)) {
+                        return;
+                    }
+                }
+            }
+            releaseOwnership();
+            throw new IllegalStateException("Journal '" + nodeId + "' is already open by another process: "
+                    + "every instance needs its own app.journal.node-id and app.journal.dir");
+        } catch (SQLException e) {
+            releaseOwnership();
+            throw new IllegalStateException("Cannot lock journal '" + nodeId + "'", e);
+        }
+    }
+
+    /** Закрытие сессии снимает advisory-блокировку. */
+    private void releaseOwnership() {
+        if (owner == null) {
+            return;
+        }
+        try {
+            owner.close();
+        } catch (SQLException e) {
+            log.warn("Could not release journal '{}': {}", nodeId, e.toString());
+        }
+        owner = null;
+    }
+
+    /**
+     * Принимает операцию: после возврата она на диске и будет записана в БД. Поток записи
+     * и чтения видят операцию только после fsync; если fsync не удался, операция получает
+     * отказ и в БД из этого процесса не попадёт, а журнал перестаёт принимать записи.
+     *
+     * @return операция с присвоенным id (changeVersion появится после записи в БД)
+     * @throws IllegalArgumentException операция не прошла проверку
+     * @throws JournalFullException     отставание журнала не сократилось за backpressure-wait
+     * @throws UncheckedIOException     операцию не удалось записать или сбросить на диск
+     */
+    public Transaction append(Long userId, Transaction transaction) {
+        String error = TransactionIngestService.validate(transaction);
+        if (error == null) {
+            error = TransactionIngestService.checkCurrency(transaction, goalRepository.findCurrency(userId));
+        }
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        // Обращение к БД за блоком id — до общей блокировки, чтобы не задерживать поток записи
+        long id = allocateId();
+        Written written;
+        lock.lock();
+        try {
+            if (syncFailed) {
+                throw new UncheckedIOException(new IOException("Journal '" + nodeId
+                        + "' stopped accepting writes after a failed fsync; restart required"));
+            }
+            awaitCapacity();
+            transaction.setId(id);
+            JournalEntry entry = JournalEntry.of(nextSeq, userId, transaction);
+            written = new Written(entry, file.append(entry.seq(), objectMapper.writeValueAsBytes(entry)));
+            nextSeq++;
+            unsynced.addLast(written);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize journal entry", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+        // fsync вне блокировки: одновременные записи сбрасываются на диск одним force
+        long started = System.nanoTime();
+        try {
+            file.sync(written.position());
+        } catch (IOException e) {
+            lock.lock();
+            try {
+                syncFailed = true;
+                unsynced.remove(written);
+                publishSynced();
+            } finally {
+                lock.unlock();
+            }
+            log.error("Journal fsync failed, entry seq {} rejected; journal '{}' stops accepting writes",
+                    written.entry().seq(), nodeId, e);
+            throw new UncheckedIOException(e);
+        }
+        fsyncTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        lock.lock();
+        try {
+            publishSynced();
+        } finally {
+            lock.unlock();
+        }
+        appends.increment();
+        return transaction;
+    }
+
+    /**
+     * Переносит в очередь записи, уже сброшенные на диск, не нарушая порядок seq:
+     * запись за ещё не сброшенной ждёт своей очереди. Вызывается под lock.
+     */
+    private void publishSynced() {
+        long synced = file.synced();
+        while (!unsynced.isEmpty() && unsynced.peekFirst().position() <= synced) {
+            enqueue(unsynced.pollFirst().entry());
+        }
+        if (queue.size() >= batchSize) {
+            batchReady.signal();
+        }
+    }
+
+    /**
+     * Снимок неприменённых операций пользователя в порядке записи. Снятый до чтения БД,
+     * он может пересекаться с ним: вызывающий пропускает строки БД с теми же id.
+     */
+    public List<TransactionView> pending(Long userId) {
+        return snapshot(userId).all();
+    }
+
+    /**
+     * Снимок для чтений, которые не различают строки по id (итоги): берётся до чтения БД,
+     * а операции, уже вошедшие в прочитанную версию данных, отсеиваются {@link Snapshot#notIn}.
+     */
+    public Snapshot snapshot(Long userId) {
+        if (!enabled) {
+            return Snapshot.EMPTY;
+        }
+        lock.lock();
+        try {
+            Deque<Pending> entries = pendingByUser.get(userId);
+            return entries == null ? Snapshot.EMPTY : new Snapshot(List.copyOf(entries));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Ждёт, пока принятые на момент вызова операции пользователя окажутся в БД. */
+    public boolean awaitApplied(Long userId, Duration timeout) throws InterruptedException {
+        if (!enabled) {
+            return true;
+        }
+        long remaining = timeout.toNanos();
+        lock.lock();
+        try {
+            Deque<Pending> entries = pendingByUser.get(userId);
+            if (entries == null) {
+                return true;
+            }
+            long target = entries.getLast().entry.seq();
+            while (appliedSeq < target) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = drained.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int lag() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitCapacity() {
+        long remaining = backpressureWaitNanos;
+        try {
+            while (queue.size() + unsynced.size() >= maxLag) {
+                if (remaining <= 0) {
+                    rejected.increment();
+                    throw new JournalFullException(queue.size());
+                }
+                remaining = drained.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            throw new JournalFullException(queue.size());
+        }
+    }
+
+    /** nextval = v выделяет блок [v - 49, v] — тот же пул, из которого берёт id Hibernate. */
+    private long allocateId() {
+        synchronized (idLock) {
+            if (nextId > idLimit) {
+                long hi;
+                do {
+                    hi = jdbcTemplate.queryForObject("select nextval('transaction_seq')", Long.class);
+                } while (hi < Transaction.ID_ALLOCATION_SIZE);
+                nextId = hi - Transaction.ID_ALLOCATION_SIZE + 1;
+                idLimit = hi;
+            }
+            return nextId++;
+        }
+    }
+
+    private void enqueue(JournalEntry entry) {
+        Pending pending = new Pending(entry);
+        queue.addLast(pending);
+        pendingByUser.computeIfAbsent(entry.userId(), id -> new ArrayDeque<>()).addLast(pending);
+    }
+
+    private void runWriter() {
+        while (running) {
+            List<Pending> batch = nextBatch();
+            // При остановке новый пакет не начинается: остаток применится из файла при запуске
+            if (batch.isEmpty() || !running) {
+                continue;
+            }
+            try {
+                flush(batch);
+            } catch (RuntimeException e) {
+                flushFailures.increment();
+                log.warn("Could not apply {} journal entries from seq {}: {}", batch.size(), batch.get(0).entry.seq(),
+                        e.toString());
+                if (!running) {
+                    return;
+                }
+                try {
+                    Thread.sleep(FAILURE_BACKOFF_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                file.deleteThrough(appliedSeq);
+            } catch (IOException e) {
+                log.warn("Could not delete applied journal segments: {}", e.toString());
+            }
+        }
+    }
+
+    /** Ждёт полного пакета не дольше flush-interval, затем берёт то, что накопилось. */
+    private List<Pending> nextBatch() {
+        lock.lock();
+        try {
+            if (running && queue.size() < batchSize) {
+                batchReady.awaitNanos(flushIntervalNanos);
+            }
+            List<Pending> batch = new ArrayList<>(Math.min(queue.size(), batchSize));
+            Iterator<Pending> entries = queue.iterator();
+            while (entries.hasNext() && batch.size() < batchSize) {
+                batch.add(entries.next());
+            }
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        long started = System.nanoTime();
+        long lastSeq = batch.get(batch.size() - 1).entry.seq();
+        transactionTemplate.executeWithoutResult(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new Publication(batch, lastSeq));
+            // Один порядок блокировки строк user_balance во всех пакетах
+            Map<Long, List<Pending>> byUser = new TreeMap<>();
+            batch.forEach(pending -> byUser.computeIfAbsent(pending.entry.userId(), id -> new ArrayList<>())
+                    .add(pending));
+            byUser.forEach(this::insert);
+            if (checkpointRepository.advance(nodeId, lastSeq, LocalDateTime.now()) == 0) {
+                throw new IllegalStateException("Journal checkpoint '" + nodeId + "' is already past seq " + lastSeq
+                        + ": another process applies the same journal");
+            }
+        });
+        flushTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    private void insert(Long userId, List<Pending> pending) {
+        long version = balanceService.nextVersion(userId);
+        // Валюта учёта читается под блокировкой строки баланса, которую берёт и смена цели:
+        // проверка в append шла без неё, и цель могла смениться, пока запись ждала в журнале
+        String accountCurrency = goalRepository.findCurrency(userId);
+        List<JournalEntry> entries = new ArrayList<>(pending.size());
+        for (Pending p : pending) {
+            if (!p.entry.currency().equals(accountCurrency)) {
+                discarded.increment();
+                log.warn("Dropping journal entry seq {} of user {}: currency {} no longer matches account currency {}",
+                        p.entry.seq(), userId, p.entry.currency(), accountCurrency);
+                continue;
+            }
+            // До фиксации: читатель, увидевший эту версию в БД, уже не добавит запись из снимка
+            p.version = version;
+            entries.add(p.entry);
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT, entries, entries.size(), (ps, entry) -> {
+            ps.setLong(1, entry.id());
+            ps.setLong(2, entry.amountMinor());
+            ps.setString(3, entry.currency());
+            ps.setString(4, entry.category());
+            ps.setString(5, entry.description());
+            ps.setString(6, entry.type());
+            ps.setObject(7, entry.date(), Types.DATE);
+            ps.setObject(8, entry.timestamp(), Types.TIMESTAMP);
+            ps.setLong(9, version);
+            ps.setLong(10, userId);
+        });
+        long income = 0;
+        long expense = 0;
+        List<Transaction> transactions = new ArrayList<>(entries.size());
+        List<TransactionView> views = new ArrayList<>(entries.size());
+        for (JournalEntry entry : entries) {
+            if ("INCOME".equals(entry.type())) {
+                income += entry.amountMinor();
+            } else {
+                expense += entry.amountMinor();
+            }
+            transactions.add(entry.toTransaction(version));
+            views.add(entry.view());
+        }
+        balanceService.applyDelta(userId, income, expense, entries.size());
+        analyticsService.recordTransactions(userId, transactions);
+        eventPublisher.publishEvent(DataChangedEvent.bulk(userId, version, views));
+    }
+
+    /** Запись, дописанная в файл, но ещё не сброшенная на диск; position — конец её кадра. */
+    private record Written(JournalEntry entry, long position) {
+    }
+
+    /** Неприменённая запись; version — версия данных пакета, который её записывает (0 — ещё нет). */
+    private static final class Pending {
+
+        private final JournalEntry entry;
+        private volatile long version;
+
+        Pending(JournalEntry entry) {
+            this.entry = entry;
+        }
+    }
+
+    /** Неприменённые операции пользователя на момент снимка. */
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(List.of());
+
+        private final List<Pending> entries;
+
+        private Snapshot(List<Pending> entries) {
+            this.entries = entries;
+        }
+
+        public List<TransactionView> all() {
+            if (entries.isEmpty()) {
+                return List.of();
+            }
+            List<TransactionView> views = new ArrayList<>(entries.size());
+            entries.forEach(pending -> views.add(pending.entry.view()));
+            return views;
+        }
+
+        /**
+         * Операции, которых нет в состоянии БД версии version: ещё не записанные или
+         * записанные пакетом более поздней версии. Версия пакета назначается до его фиксации,
+         * поэтому запись, успевшая попасть в прочитанную версию, сюда не войдёт.
+         */
+        public List<TransactionView> notIn(long version) {
+            List<TransactionView> views = new ArrayList<>(entries.size());
+            for (Pending pending : entries) {
+                long applied = pending.version;
+                if (applied == 0 || applied > version) {
+                    views.add(pending.entry.view());
+                }
+            }
+            return views;
+        }
+    }
+
+    /** После фиксации убирает применённые записи из очереди; после отката снимает с них версию пакета. */
+    private final class Publication implements TransactionSynchronization {
+
+        private final List<Pending> batch;
+        private final long lastSeq;
+
+        Publication(List<Pending> batch, long lastSeq) {
+            this.batch = batch;
+            this.lastSeq = lastSeq;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) {
+                applied();
+            } else {
+                batch.forEach(pending -> pending.version = 0);
+            }
+        }
+
+        private void applied() {
+            lock.lock();
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    Pending pending = queue.pollFirst();
+                    Deque<Pending> entries = pendingByUser.get(pending.entry.userId());
+                    entries.pollFirst();
+                    if (entries.isEmpty()) {
+                        pendingByUser.remove(pending.entry.userId());
+                    }
+                }
+                appliedSeq = lastSeq;
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
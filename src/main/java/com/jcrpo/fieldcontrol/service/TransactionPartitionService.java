@@ -0,0 +1,213 @@
+package com.jcrpo.fieldcontrol.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обслуживание месячных секций transaction (схема — миграция V4). Заранее создаёт секции
+ * на ближайшие месяцы, а месяцы старше горизонта hot-months переносит в transaction_archive:
+ * секция отсоединяется и присоединяется к архиву целиком, без копирования строк. Так живая
+ * таблица и её индексы держат постоянное число месяцев, а холодные секции замораживаются
+ * одним VACUUM и больше не нуждаются в очистке. Строки из секции по умолчанию (даты вне
+ * созданных месяцев) разносятся по своим секциям при их создании или уходят в архив.
+ * Запросы без условия по date секции не отсекают и проходят все живые
+ * (см. TransactionRepository): горизонт ограничивает и их стоимость.
+ * <p>
+ * Каждый шаг — короткая транзакция под advisory-блокировкой: из нескольких экземпляров
+ * обслуживание выполняет один. Отсоединение секции ненадолго берёт исключительную блокировку
+ * transaction; lock-timeout не даёт ему встать в очередь за долгим чтением и задержать всех.
+ */
+@Service
+public class TransactionPartitionService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionPartitionService.class);
+
+    private static final String LIVE = "transaction";
+    private static final String LIVE_DEFAULT = "transaction_default";
+    private static final String ARCHIVE = "transaction_archive";
+    private static final String ARCHIVE_DEFAULT = "transaction_archive_default";
+    private static final String COLUMNS =
+            "id, amount_minor, category, change_version, currency, date, description, timestamp, type, user_id";
+    private static final Pattern PARTITION_NAME = Pattern.compile("transaction_p(\\d{6})");
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    // Произвольная константа: ключ advisory-блокировки обслуживания секций
+    private static final long LOCK_KEY = 0x7472_7061_7274L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int hotMonths;
+    private final int aheadMonths;
+    private final long lockTimeoutMillis;
+    private final AtomicInteger livePartitions = new AtomicInteger();
+    private final Counter createdPartitions;
+    private final Counter archivedPartitions;
+    private final Counter archivedRows;
+
+    public TransactionPartitionService(JdbcTemplate jdbcTemplate,
+                                       TransactionTemplate transactionTemplate,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${app.partitions.hot-months:24}") int hotMonths,
+                                       @Value("${app.partitions.create-ahead-months:3}") int aheadMonths,
+                                       @Value("${app.partitions.lock-timeout:PT5S}") Duration lockTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.hotMonths = hotMonths;
+        this.aheadMonths = aheadMonths;
+        this.lockTimeoutMillis = lockTimeout.toMillis();
+        this.createdPartitions = Counter.builder("transaction.partitions.created")
+                .description("Monthly transaction partitions created ahead of time").register(meterRegistry);
+        this.archivedPartitions = Counter.builder("transaction.partitions.archived")
+                .description("Monthly transaction partitions moved to the archive").register(meterRegistry);
+        this.archivedRows = Counter.builder("transaction.archived.rows")
+                .description("Out-of-range transactions moved from the default partition to the archive")
+                .register(meterRegistry);
+        Gauge.builder("transaction.live.partitions", livePartitions, AtomicInteger::get)
+                .description("Monthly partitions attached to the live transaction table").register(meterRegistry);
+    }
+
+    /** Секции текущего месяца и следующих должны существовать до первой записи после старта. */
+    @EventListener(ApplicationReadyEvent.class)
+    void maintainOnStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${app.partitions.maintenance-cron:0 15 3 * * *}")
+    public void maintain() {
+        try {
+            YearMonth current = YearMonth.now();
+            for (int i = 0; i <= aheadMonths; i++) {
+                YearMonth month = current.plusMonths(i);
+                if (!locked(() -> createPartition(month))) {
+                    return; // обслуживает другой экземпляр
+                }
+            }
+            if (hotMonths > 0) {
+                archiveBefore(current.minusMonths(hotMonths));
+            }
+            livePartitions.set(partitionsOf(LIVE).size());
+        } catch (RuntimeException e) {
+            // Повторится при следующем запуске; записи тем временем попадают в секцию по умолчанию
+            log.warn("Transaction partition maintenance failed: {}", e.toString());
+        }
+    }
+
+    private void archiveBefore(YearMonth horizon) {
+        for (YearMonth month : partitionsOf(LIVE)) {
+            if (!month.isBefore(horizon)) {
+                continue;
+            }
+            if (!locked(() -> archivePartition(month))) {
+                return;
+            }
+            archivedPartitions.increment();
+            log.info("Archived transaction partition {}", partitionName(month));
+            freeze(partitionName(month));
+        }
+        LocalDate before = horizon.atDay(1);
+        locked(() -> {
+            int moved = jdbcTemplate.update("with moved as (delete from " + LIVE_DEFAULT + " where date < ? returning "
+                    + COLUMNS + ") insert into " + ARCHIVE + " (" + COLUMNS + ") select " + COLUMNS + " from moved", before);
+            archivedRows.increment(moved);
+        });
+    }
+
+    /** Новая секция забирает строки своего месяца из секции по умолчанию, иначе её нельзя присоединить. */
+    private void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        if (jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class, name)) {
+            return;
+        }
+        jdbcTemplate.execute("create table " + name + " (like " + LIVE + " including defaults)");
+        moveFromDefault(LIVE_DEFAULT, name, month);
+        attach(LIVE, name, month);
+        createdPartitions.increment();
+        log.info("Created transaction partition {}", name);
+    }
+
+    /**
+     * Секция переходит в архив целиком. Индексы, которых нет у архива, удаляются:
+     * холодной истории нужен только (user_id, timestamp, id).
+     */
+    private void archivePartition(YearMonth month) {
+        String name = partitionName(month);
+        jdbcTemplate.execute("alter table " + LIVE + " detach partition " + name);
+        jdbcTemplate.execute("alter table " + name + " drop constraint if exists fk_transaction_user");
+        moveFromDefault(ARCHIVE_DEFAULT, name, month);
+        attach(ARCHIVE, name, month);
+        List<String> unusedIndexes = jdbcTemplate.queryForList("select c.relname from pg_index x " +
+                "join pg_class c on c.oid = x.indexrelid where x.indrelid = ?::regclass " +
+                "and not exists (select 1 from pg_inherits h where h.inhrelid = x.indexrelid)", String.class, name);
+        for (String index : unusedIndexes) {
+            jdbcTemplate.execute("drop index " + index);
+        }
+    }
+
+    private void moveFromDefault(String defaultPartition, String partition, YearMonth month) {
+        jdbcTemplate.update("with moved as (delete from " + defaultPartition + " where date >= ? and date < ? returning "
+                        + COLUMNS + ") insert into " + partition + " (" + COLUMNS + ") select " + COLUMNS + " from moved",
+                month.atDay(1), month.plusMonths(1).atDay(1));
+    }
+
+    private void attach(String parent, String partition, YearMonth month) {
+        jdbcTemplate.execute("alter table " + parent + " attach partition " + partition + " for values from ('"
+                + month.atDay(1) + "') to ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    /** Вне транзакции: VACUUM в ней не выполняется. Архивная секция больше не меняется. */
+    private void freeze(String partition) {
+        try {
+            jdbcTemplate.execute("vacuum (freeze, analyze) " + partition);
+        } catch (RuntimeException e) {
+            log.warn("Could not freeze archived partition {}: {}", partition, e.toString());
+        }
+    }
+
+    private List<YearMonth> partitionsOf(String parent) {
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : jdbcTemplate.queryForList("select c.relname from pg_inherits i " +
+                "join pg_class c on c.oid = i.inhrelid where i.inhparent = ?::regclass order by c.relname",
+                String.class, parent)) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches()) {
+                months.add(YearMonth.parse(matcher.group(1), MONTH));
+            }
+        }
+        return months;
+    }
+
+    /** false — блокировку держит другой экземпляр, шаг не выполнялся. */
+    private boolean locked(Runnable step) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (!jdbcTemplate.queryForObject("select pg_try_advisory_xact_lock(?)", Boolean.class, LOCK_KEY)) {
+                return false;
+            }
+            jdbcTemplate.execute("set local lock_timeout = " + lockTimeoutMillis);
+            step.run();
+            return true;
+        }));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return LIVE + "_p" + month.format(MONTH);
+    }
+}
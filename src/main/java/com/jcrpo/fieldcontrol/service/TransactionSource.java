@@ -0,0 +1,13 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.model.Transaction;
+
+import java.io.IOException;
+
+/** Последовательный источник операций для пакетной загрузки (читается по одной записи). */
+@FunctionalInterface
+public interface TransactionSource {
+
+    /** Следующая операция или null, если данные закончились. */
+    Transaction next() throws IOException;
+}
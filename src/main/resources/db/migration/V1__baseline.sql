@@ -0,0 +1,143 @@
+-- Схема на момент перехода с ddl-auto=update на миграции. Все операторы идемпотентны:
+-- на пустой базе создают схему, на базе, которую вёл Hibernate, только добавляют недостающее.
+
+create sequence if not exists transaction_seq start with 1 increment by 50;
+
+create table if not exists users (
+    id bigserial not null,
+    password varchar(255) not null,
+    username varchar(255) not null unique,
+    primary key (id)
+);
+
+create table if not exists goal (
+    id bigserial not null,
+    amount_minor bigint not null default 0,
+    change_version bigint,
+    currency varchar(255),
+    date date,
+    name varchar(255),
+    user_id bigint,
+    primary key (id)
+);
+
+create table if not exists transaction (
+    id bigint not null,
+    amount_minor bigint not null default 0,
+    category varchar(255),
+    change_version bigint,
+    currency varchar(3),
+    date date,
+    description varchar(255),
+    timestamp timestamp(6),
+    type varchar(255),
+    user_id bigint,
+    primary key (id)
+);
+
+-- Колонки, появившиеся после первых версий (в старых базах их добавлял Hibernate)
+alter table goal add column if not exists amount_minor bigint not null default 0;
+alter table goal add column if not exists change_version bigint;
+alter table transaction add column if not exists amount_minor bigint not null default 0;
+alter table transaction add column if not exists currency varchar(3);
+alter table transaction add column if not exists change_version bigint;
+
+create table if not exists user_balance (
+    user_id bigint not null,
+    data_version bigint not null default 0,
+    expense_minor bigint not null default 0,
+    goal_expense_minor bigint not null default 0,
+    goal_id bigint,
+    goal_income_minor bigint not null default 0,
+    income_minor bigint not null default 0,
+    purged_through_id bigint,
+    reset_version bigint not null default 0,
+    rollups_ready boolean,
+    transaction_count bigint not null,
+    primary key (user_id)
+);
+
+create table if not exists spending_rollup (
+    id bigserial not null,
+    category varchar(255) not null,
+    day date not null,
+    total_minor bigint not null default 0,
+    tx_count bigint not null,
+    type varchar(16) not null,
+    user_id bigint not null,
+    primary key (id),
+    constraint uk_spending_rollup_key unique (user_id, day, type, category)
+);
+
+create table if not exists currency_rate_snapshot (
+    id bigserial not null,
+    rates text not null,
+    updated_at timestamp(6) with time zone not null,
+    primary key (id)
+);
+
+create table if not exists purge_job (
+    id bigserial not null,
+    created_at timestamp(6),
+    deleted_rows bigint not null,
+    max_transaction_id bigint not null,
+    status varchar(16) not null check (status in ('PENDING', 'DONE')),
+    total_rows bigint not null,
+    updated_at timestamp(6),
+    user_id bigint not null,
+    primary key (id)
+);
+
+create table if not exists import_job (
+    id bigserial not null,
+    created_at timestamp(6),
+    file_name varchar(255),
+    header varchar(1024),
+    last_error varchar(1024),
+    rows_accepted bigint not null,
+    rows_consumed bigint not null,
+    rows_rejected bigint not null,
+    status varchar(16) not null check (status in ('RUNNING', 'INTERRUPTED', 'DONE')),
+    updated_at timestamp(6),
+    user_id bigint not null,
+    primary key (id)
+);
+
+create table if not exists journal_checkpoint (
+    name varchar(64) not null,
+    applied_seq bigint not null,
+    updated_at timestamp(6),
+    primary key (name)
+);
+
+-- Keyset-пагинация истории: where user_id = ? order by timestamp desc, id desc
+create index if not exists idx_transaction_user_timestamp on transaction (user_id, timestamp, id);
+-- Операции за день (сегодняшние расходы, фильтры по диапазону дат)
+create index if not exists idx_transaction_user_date on transaction (user_id, date);
+-- История по типу
+create index if not exists idx_transaction_user_type_timestamp on transaction (user_id, type, timestamp);
+-- Изменения с версии N
+create index if not exists idx_transaction_user_change_version on transaction (user_id, change_version);
+-- Пересчёт дневных итогов аналитики: пользователи с операциями за последние дни (where date >= ?)
+create index if not exists idx_transaction_date on transaction (date);
+create index if not exists idx_goal_user on goal (user_id);
+create index if not exists idx_currency_rate_snapshot_updated on currency_rate_snapshot (updated_at);
+create index if not exists idx_purge_job_status on purge_job (status, id);
+create index if not exists idx_import_job_user on import_job (user_id, id);
+
+-- Внешние ключи Hibernate создавал с генерированными именами: добавляем, только если ключа нет
+do $$
+begin
+    if not exists (select 1 from pg_constraint where conrelid = 'goal'::regclass and contype = 'f') then
+        alter table goal add constraint fk_goal_user foreign key (user_id) references users;
+    end if;
+    if not exists (select 1 from pg_constraint where conrelid = 'transaction'::regclass and contype = 'f') then
+        alter table transaction add constraint fk_transaction_user foreign key (user_id) references users;
+    end if;
+end
+$$;
+
+-- Операции раньше получали id из IDENTITY-колонки. Сдвигаем последовательность за
+-- существующие значения с запасом на блок пула (allocationSize = 50), чтобы не было пересечений.
+select setval('transaction_seq', greatest((select coalesce(max(id), 0) from transaction) + 50,
+                                          (select last_value from transaction_seq)));
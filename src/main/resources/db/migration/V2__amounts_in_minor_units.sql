@@ -0,0 +1,34 @@
+-- Перенос сумм из старых double-колонок в колонки сотых (*_minor): значение округляется
+-- до сотых, старая колонка удаляется. На базах, созданных после перехода, переносить нечего.
+do $$
+declare
+    col record;
+begin
+    for col in
+        select * from (values
+            ('transaction', 'amount', 'amount_minor'),
+            ('goal', 'amount', 'amount_minor'),
+            ('user_balance', 'income', 'income_minor'),
+            ('user_balance', 'expense', 'expense_minor'),
+            ('user_balance', 'goal_income', 'goal_income_minor'),
+            ('user_balance', 'goal_expense', 'goal_expense_minor'),
+            ('spending_rollup', 'total', 'total_minor')
+        ) as c(table_name, legacy, minor)
+        where exists (select 1 from information_schema.columns i
+                      where i.table_schema = current_schema()
+                        and i.table_name = c.table_name and i.column_name = c.legacy)
+    loop
+        execute format('update %I set %I = cast(round(coalesce(%I, 0) * 100) as bigint)',
+                       col.table_name, col.minor, col.legacy);
+        execute format('alter table %I drop column %I', col.table_name, col.legacy);
+        raise notice 'Moved %.% to %', col.table_name, col.legacy, col.minor;
+    end loop;
+end
+$$;
+
+-- Операции без валюты записаны в валюте цели пользователя
+update transaction t
+set currency = coalesce((select upper(g.currency) from goal g
+                         where g.user_id = t.user_id and length(g.currency) = 3
+                         order by g.id desc limit 1), 'BYN')
+where t.currency is null;
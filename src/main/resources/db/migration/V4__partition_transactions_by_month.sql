@@ -0,0 +1,79 @@
+-- Операции секционируются по месяцам поля date; месяцы старше горизонта TransactionPartitionService
+-- переносит целыми секциями в transaction_archive. Миграция переписывает таблицу целиком под
+-- блокировкой — на большой базе её выполняют в окно обслуживания.
+-- Новые колонки с этой версии добавляются в transaction и transaction_archive одинаково:
+-- секция переходит между ними только при полном совпадении колонок.
+
+-- Ключ секционирования входит в первичный ключ и не может быть null; запись уже всегда заполняет дату
+update transaction set date = coalesce(timestamp::date, current_date) where date is null;
+
+alter table transaction rename to transaction_unpartitioned;
+alter index if exists transaction_pkey rename to transaction_unpartitioned_pkey;
+
+create table transaction (
+    id bigint not null,
+    amount_minor bigint not null default 0,
+    category varchar(255),
+    change_version bigint,
+    currency varchar(3),
+    date date not null,
+    description varchar(255),
+    timestamp timestamp(6),
+    type varchar(255),
+    user_id bigint,
+    primary key (id, date),
+    constraint fk_transaction_user foreign key (user_id) references users
+) partition by range (date);
+
+-- Даты вне созданных секций (импорт далёкого прошлого или будущего) до обслуживания лежат здесь
+create table transaction_default partition of transaction default;
+
+-- Секции на каждый месяц с данными и на текущий месяц с тремя следующими
+do $$
+declare
+    first_day date;
+begin
+    for first_day in
+        select distinct date_trunc('month', date)::date from transaction_unpartitioned
+        union
+        select (date_trunc('month', current_date) + make_interval(months => n))::date
+        from generate_series(0, 3) as n
+    loop
+        execute format('create table %I partition of transaction for values from (%L) to (%L)',
+                       'transaction_p' || to_char(first_day, 'YYYYMM'), first_day, (first_day + interval '1 month')::date);
+    end loop;
+end
+$$;
+
+insert into transaction (id, amount_minor, category, change_version, currency, date, description, timestamp, type, user_id)
+select id, amount_minor, category, change_version, currency, date, description, timestamp, type, user_id
+from transaction_unpartitioned;
+
+drop table transaction_unpartitioned;
+
+-- Индексы создаются после загрузки: секционированный индекс строится в каждой секции
+create index idx_transaction_user_timestamp on transaction (user_id, timestamp, id);
+create index idx_transaction_user_date on transaction (user_id, date);
+create index idx_transaction_user_type_timestamp on transaction (user_id, type, timestamp);
+create index idx_transaction_user_change_version on transaction (user_id, change_version);
+create index idx_transaction_date on transaction (date);
+
+-- Холодная история: те же колонки, один индекс под постраничное чтение и выборку по пользователю.
+-- Внешнего ключа нет — присоединение секции не перепроверяет ссылки.
+create table transaction_archive (
+    id bigint not null,
+    amount_minor bigint not null default 0,
+    category varchar(255),
+    change_version bigint,
+    currency varchar(3),
+    date date not null,
+    description varchar(255),
+    timestamp timestamp(6),
+    type varchar(255),
+    user_id bigint,
+    primary key (id, date)
+) partition by range (date);
+
+create table transaction_archive_default partition of transaction_archive default;
+
+create index idx_transaction_archive_user_timestamp on transaction_archive (user_id, timestamp, id);
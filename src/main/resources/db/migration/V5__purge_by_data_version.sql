@@ -0,0 +1,15 @@
+-- Очистка истории отмечается версией данных, а не максимальным id: блоки id из transaction_seq
+-- выдаются экземплярам заранее и фиксируются не по порядку, а версия выдаётся под блокировкой
+-- строки user_balance. Операции, записанные до появления версий, получают версию 0.
+update transaction set change_version = 0 where change_version is null;
+update transaction_archive set change_version = 0 where change_version is null;
+alter table transaction alter column change_version set default 0, alter column change_version set not null;
+alter table transaction_archive alter column change_version set default 0, alter column change_version set not null;
+
+-- Незавершённые задачи удаляют всё, что старше последнего удаления истории пользователя
+alter table purge_job add column reset_version bigint;
+update purge_job j set reset_version = coalesce((select b.reset_version from user_balance b where b.user_id = j.user_id), 0);
+alter table purge_job alter column reset_version set not null;
+alter table purge_job drop column max_transaction_id;
+
+alter table user_balance drop column purged_through_id;
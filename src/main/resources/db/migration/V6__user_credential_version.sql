@@ -0,0 +1,3 @@
+-- Версия учётных данных входит в подписанный токен: смена пароля повышает её, и токены,
+-- выпущенные раньше, отклоняются на любом экземпляре и после перезапуска
+alter table users add column if not exists credential_version integer not null default 0;
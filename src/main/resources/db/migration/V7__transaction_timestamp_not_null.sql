@@ -0,0 +1,7 @@
+-- Курсор истории — пара (timestamp, id): строка без времени не попадала ни в одно сравнение
+-- "timestamp < :ts", и её курсор не разбирался. Недостающее время — начало дня операции,
+-- как при загрузке выписок. Обе таблицы меняются одинаково: секции переходят из одной в другую.
+update transaction set timestamp = date::timestamp where timestamp is null;
+update transaction_archive set timestamp = date::timestamp where timestamp is null;
+alter table transaction alter column timestamp set not null;
+alter table transaction_archive alter column timestamp set not null;
@@ -1,10 +1,14 @@
 // src/main/resources/static/js/App.js
-import { getFullData, saveGoal, saveTransaction, deleteGoal, logout } from './api.js';
+import { getSummary, getTransactions, saveGoal, saveTransaction, deleteGoal, logout, subscribeLiveUpdates } from './api.js';
 
 class App {
     constructor() {
         this.currentGoal = null;
-        this.currentTransactions = [];
+        this.todayExpenses = [];
+        this.incomeHistory = [];
+        this.incomeCursor = null; // курсор следующей страницы истории доходов
+        this.loadingIncomes = false;
+        this.summary = null; // серверные итоги: { goalCollected, income, expense, ... }
         this.currencySymbols = { BYN: 'Br', USD: '$', EUR: '€', RUB: '₽', CNY: '¥' };
         this.exchangeRates = {}; // format: { "USD": { buy: Number, sell: Number }, ... }
 
@@ -66,6 +70,13 @@ class App {
             });
         }
 
+        if (this.incomesListEl) {
+            this.incomesListEl.addEventListener('scroll', () => {
+                const el = this.incomesListEl;
+                if (el.scrollTop + el.clientHeight >= el.scrollHeight - 40) this.loadMoreIncomes();
+            });
+        }
+
         if (this.converterAmount1) this.converterAmount1.addEventListener('input', () => this.handleConversion());
         if (this.converterCurrency1) this.converterCurrency1.addEventListener('change', () => this.handleConversion());
         if (this.converterCurrency2) this.converterCurrency2.addEventListener('change', () => this.handleConversion());
@@ -88,20 +99,25 @@ class App {
 
     async loadInitialData() {
         try {
-            const storedData = sessionStorage.getItem('userData');
-            let data = null;
-            if (storedData) {
-                data = JSON.parse(storedData);
-                sessionStorage.removeItem('userData');
+            const storedSummary = sessionStorage.getItem('userSummary');
+            if (storedSummary) {
+                this.summary = JSON.parse(storedSummary);
+                sessionStorage.removeItem('userSummary');
             } else {
-                data = await getFullData();
-            }
-
-            if (data) {
-                this.currentGoal = data.goal || null;
-                this.currentTransactions = data.transactions || [];
-                this.updateUI();
+                this.summary = await getSummary();
             }
+            this.currentGoal = this.summary?.goal || null;
+
+            // списки берём постранично с сервера, уже отфильтрованными и отсортированными
+            const today = new Date().toISOString().split('T')[0];
+            const [expenses, incomes] = await Promise.all([
+                getTransactions({ type: 'EXPENSE', from: today, to: today, limit: 500 }),
+                getTransactions({ type: 'INCOME' })
+            ]);
+            this.todayExpenses = expenses?.items || [];
+            this.incomeHistory = incomes?.items || [];
+            this.incomeCursor = incomes?.nextCursor || null;
+            this.updateUI();
         } catch (error) {
             console.error('Error loading data:', error);
             this.showNotification('Ошибка загрузки данных.', 'error');
@@ -111,6 +127,52 @@ class App {
         this.fetchCurrencyRates().catch(() => {
             this.showNotification('Не удалось загрузить курсы валют', 'error');
         });
+
+        // изменения с других устройств и новые курсы приходят сами, без опроса
+        if (!this.stopLiveUpdates) {
+            this.stopLiveUpdates = subscribeLiveUpdates((name, data) => this.handleLiveEvent(name, data));
+        }
+    }
+
+    handleLiveEvent(name, data) {
+        switch (name) {
+            case 'transaction': {
+                const t = data.transaction;
+                const today = new Date().toISOString().split('T')[0];
+                const list = t.type === 'INCOME' ? this.incomeHistory : (t.date === today ? this.todayExpenses : null);
+                // своя операция уже добавлена после сохранения
+                if (list && !list.some(existing => existing.id === t.id)) {
+                    list.unshift(t);
+                    this.updateUI();
+                }
+                break;
+            }
+            case 'goal':
+                this.currentGoal = data.goal;
+                this.updateUI();
+                break;
+            case 'balance':
+                this.summary = data.summary;
+                this.currentGoal = data.summary?.goal || null;
+                this.updateUI();
+                break;
+            case 'reset':
+                this.currentGoal = null;
+                this.todayExpenses = [];
+                this.incomeHistory = [];
+                this.incomeCursor = null;
+                this.updateUI();
+                break;
+            case 'resync':
+                // пакетная загрузка или пропущенные события — перечитываем списки
+                this.loadInitialData();
+                break;
+            case 'rates':
+                this.fetchCurrencyRates();
+                break;
+            default:
+                break;
+        }
     }
 
     updateUI() {
@@ -130,10 +192,7 @@ class App {
                 this.piggyBankFillEl.style.clipPath = 'inset(100% 0 0 0)';
             }
         } else {
-            const totalCollected = this.currentTransactions.reduce((acc, t) => {
-                const amt = Number(t.amount) || 0;
-                return t.type === 'INCOME' ? acc + amt : acc - amt;
-            }, 0);
+            const totalCollected = Number(this.summary?.goalCollected) || 0;
 
             const goalAmount = Number(this.currentGoal.amount) || 0;
             const currencySymbol = this.currencySymbols[this.currentGoal.currency] || '';
@@ -156,28 +215,38 @@ class App {
     renderTodaysExpenses() {
         if (!this.expensesListEl) return;
         this.expensesListEl.innerHTML = '';
-        const today = new Date().toISOString().split('T')[0];
-        const todayExpenses = this.currentTransactions.filter(t => t.type === 'EXPENSE' && (t.date ? t.date === today : false));
-
-        if (todayExpenses.length === 0) {
+        if (this.todayExpenses.length === 0) {
             this.expensesListEl.innerHTML = '<li>Сегодня расходов нет.</li>';
             return;
         }
-        todayExpenses.forEach(exp => this.renderTransaction(exp, this.expensesListEl));
+        this.todayExpenses.forEach(exp => this.renderTransaction(exp, this.expensesListEl));
     }
 
     renderIncomeHistory() {
         if (!this.incomesListEl) return;
         this.incomesListEl.innerHTML = '';
-        const allIncomes = this.currentTransactions
-            .filter(t => t.type === 'INCOME')
-            .sort((a, b) => new Date(b.timestamp || b.date || 0) - new Date(a.timestamp || a.date || 0));
-
-        if (allIncomes.length === 0) {
+        if (this.incomeHistory.length === 0) {
             this.incomesListEl.innerHTML = '<li>История доходов пуста.</li>';
             return;
         }
-        allIncomes.forEach(inc => this.renderTransaction(inc, this.incomesListEl, true));
+        this.incomeHistory.forEach(inc => this.renderTransaction(inc, this.incomesListEl, true));
+    }
+
+    // бесконечная прокрутка: подгружаем следующую страницу по курсору
+    async loadMoreIncomes() {
+        if (!this.incomeCursor || this.loadingIncomes) return;
+        this.loadingIncomes = true;
+        try {
+            const page = await getTransactions({ type: 'INCOME', cursor: this.incomeCursor });
+            const items = page?.items || [];
+            this.incomeHistory.push(...items);
+            this.incomeCursor = page?.nextCursor || null;
+            items.forEach(inc => this.renderTransaction(inc, this.incomesListEl, true));
+        } catch (e) {
+            console.error('Ошибка загрузки истории доходов:', e);
+        } finally {
+            this.loadingIncomes = false;
+        }
     }
 
     renderTransaction(transaction, listElement, showTimestamp = false) {
@@ -258,7 +327,10 @@ class App {
             const updatedGoal = await saveGoal(goalData);
             // backend may return the saved goal or partial; handle gracefully
             this.currentGoal = updatedGoal || goalData;
-            this.currentTransactions = []; // new goal resets transactions locally
+            this.todayExpenses = []; // new goal resets transactions locally
+            this.incomeHistory = [];
+            this.incomeCursor = null;
+            if (this.summary) this.summary.goalCollected = 0;
             this.updateUI();
             form.closest('.form-container')?.classList.remove('active');
             this.showNotification('Цель успешно сохранена!', 'success');
@@ -288,7 +360,9 @@ class App {
         try {
             const newTransaction = await saveTransaction(transactionData);
             // backend might return created transaction — fallback to local one
-            this.currentTransactions.push(newTransaction || transactionData);
+            const saved = newTransaction || transactionData;
+            if (type === 'EXPENSE') this.todayExpenses.unshift(saved); else this.incomeHistory.unshift(saved);
+            this.applyToSummary(newTransaction || transactionData);
             this.updateUI();
             form.closest('.form-container')?.classList.remove('active');
             this.showNotification(`Добавлен ${type === 'EXPENSE' ? 'расход' : 'доход'}!`, 'success');
@@ -298,6 +372,17 @@ class App {
         }
     }
 
+    // keep server summary in sync locally instead of refetching after each save
+    applyToSummary(transaction) {
+        if (!this.summary) return;
+        const amt = Number(transaction.amount) || 0;
+        const delta = transaction.type === 'INCOME' ? amt : -amt;
+        if (transaction.type === 'INCOME') this.summary.income += amt; else this.summary.expense += amt;
+        this.summary.net += delta;
+        this.summary.goalCollected += delta;
+        this.summary.transactionCount += 1;
+    }
+
     handleExpenseSubmit(form) { this.handleTransactionSubmit(form, 'EXPENSE'); }
     handleIncomeSubmit(form) { this.handleTransactionSubmit(form, 'INCOME'); }
 
@@ -322,7 +407,10 @@ class App {
             try {
                 await deleteGoal();
                 this.currentGoal = null;
-                this.currentTransactions = [];
+                this.todayExpenses = [];
+                this.incomeHistory = [];
+                this.incomeCursor = null;
+                this.summary = { goal: null, income: 0, expense: 0, net: 0, goalCollected: 0, transactionCount: 0 };
                 this.updateUI();
                 this.confirmationModal.classList.remove('active');
                 this.showNotification('Цель успешно удалена.', 'success');
@@ -387,11 +475,12 @@ class App {
     // Robust parser for several possible response shapes from /api/currency
     async fetchCurrencyRates() {
         try {
-            // ⚙️ 1. Запрос с таймаутом и без кэширования
+            // ⚙️ 1. Запрос с таймаутом и ревалидацией кэша
             const controller = new AbortController();
             const timeout = setTimeout(() => controller.abort(), 5000); // 5 секунд максимум
+            // no-cache: браузер ревалидирует по ETag и при неизменных курсах получает 304
             const response = await fetch('/api/currency', {
-                cache: 'no-store',
+                cache: 'no-cache',
                 signal: controller.signal
             });
             clearTimeout(timeout);
@@ -6,14 +6,15 @@ export async function login(username, password) {
     const credentials = btoa(`${username}:${password}`);
     const authHeader = `Basic ${credentials}`;
 
-    const response = await fetch(`${API_BASE_URL}`, {
+    // сводка дешёвая и не зависит от длины истории — ею же проверяем учётные данные
+    const response = await fetch(`${API_BASE_URL}/summary`, {
         headers: { 'Authorization': authHeader }
     });
 
     if (response.ok) {
         globalAuthHeader = authHeader;
         const data = await response.json();
-        sessionStorage.setItem('userData', JSON.stringify(data));
+        sessionStorage.setItem('userSummary', JSON.stringify(data));
         sessionStorage.setItem('authHeader', authHeader);
         return true;
     }
@@ -65,8 +66,105 @@ async function fetchAPI(endpoint = '', options = {}) {
     }
 }
 
+// Локальная копия /api/data: после первой загрузки запрашиваются только изменения
+let dataCache = null;
+
 export async function getFullData() {
-    return fetchAPI();
+    if (!dataCache) {
+        dataCache = await fetchAPI();
+        return dataCache;
+    }
+    const delta = await fetchAPI(`/changes?since=${dataCache.version}`);
+    if (delta.reset) {
+        dataCache = { version: delta.version, goal: delta.goal, transactions: delta.transactions };
+        return dataCache;
+    }
+    const known = new Set(dataCache.transactions.map(t => t.id));
+    const added = delta.transactions.filter(t => !known.has(t.id));
+    dataCache = {
+        version: delta.version,
+        goal: delta.goal || dataCache.goal,
+        transactions: added.length === 0 ? dataCache.transactions : [...added, ...dataCache.transactions]
+            .sort((a, b) => (b.timestamp || '').localeCompare(a.timestamp || '') || b.id - a.id)
+    };
+    return dataCache;
+}
+
+export async function getSummary() {
+    return fetchAPI('/summary');
+}
+
+// params: { type, from, to, cursor, limit } -> { items, nextCursor }
+export async function getTransactions(params = {}) {
+    const query = new URLSearchParams();
+    Object.entries(params).forEach(([key, value]) => {
+        if (value !== undefined && value !== null && value !== '') query.set(key, value);
+    });
+    const qs = query.toString();
+    return fetchAPI(`/transactions${qs ? `?${qs}` : ''}`);
+}
+
+// Живые обновления (SSE). EventSource не умеет передавать Authorization, поэтому поток
+// читается через fetch. onEvent(name, data) вызывается на каждое событие; при обрыве —
+// переподключение с нарастающей паузой. Возвращает функцию отключения.
+export function subscribeLiveUpdates(onEvent) {
+    let controller = null;
+    let stopped = false;
+    let retryDelay = 1000;
+
+    const connect = async () => {
+        controller = new AbortController();
+        try {
+            const response = await fetch(`${API_BASE_URL}/events`, {
+                headers: { ...getProtectedHeaders(), 'Accept': 'text/event-stream' },
+                signal: controller.signal
+            });
+            if (!response.ok || !response.body) throw new Error(`Events API returned ${response.status}`);
+            retryDelay = 1000;
+            const reader = response.body.getReader();
+            const decoder = new TextDecoder();
+            let buffer = '';
+            for (;;) {
+                const { value, done } = await reader.read();
+                if (done) break;
+                buffer += decoder.decode(value, { stream: true });
+                let boundary;
+                while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+                    dispatchEvent(buffer.slice(0, boundary), onEvent);
+                    buffer = buffer.slice(boundary + 2);
+                }
+            }
+        } catch (error) {
+            if (stopped) return;
+            console.warn('Live updates disconnected:', error);
+        }
+        if (!stopped) {
+            setTimeout(connect, retryDelay);
+            retryDelay = Math.min(retryDelay * 2, 30000);
+        }
+    };
+
+    connect();
+    return () => {
+        stopped = true;
+        controller?.abort();
+    };
+}
+
+function dispatchEvent(block, onEvent) {
+    let name = 'message';
+    const data = [];
+    block.split('\n').forEach(line => {
+        if (line.startsWith(':')) return; // heartbeat
+        if (line.startsWith('event:')) name = line.slice(6).trim();
+        else if (line.startsWith('data:')) data.push(line.slice(5).replace(/^ /, ''));
+    });
+    if (data.length === 0) return;
+    try {
+        onEvent(name, JSON.parse(data.join('\n')));
+    } catch (e) {
+        console.warn('Malformed live event:', e);
+    }
 }
 
 export async function saveGoal(goal) {
@@ -83,13 +181,15 @@ export async function saveTransaction(transaction) {
     });
 }
 
+// история удаляется на сервере в фоне; ответ приходит сразу
 export async function deleteGoal() {
-    return fetchAPI('/goal', {
+    return fetchAPI('/goal?async=true', {
         method: 'DELETE'
     });
 }
 
 export function logout() {
+    dataCache = null;
     sessionStorage.clear();
     globalAuthHeader = '';
     window.location.href = 'login.html';
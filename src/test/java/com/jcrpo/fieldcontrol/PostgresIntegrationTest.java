@@ -0,0 +1,106 @@
+package com.jcrpo.fieldcontrol;
+
+import org.junit.jupiter.api.extension.ConditionEvaluationResult;
+import org.junit.jupiter.api.extension.ExecutionCondition;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * База для тестов на настоящем PostgreSQL: схема, секции и advisory-блокировки на H2 не проверить.
+ * Берётся внешняя база из TEST_DATABASE_URL (сервис postgres в CI, локальный сервер), иначе —
+ * один контейнер Testcontainers на все тесты. Без Docker и без переменной тесты пропускаются:
+ * условие подключено через @ExtendWith, которое, в отличие от @EnabledIf, наследуется.
+ * Данные между тестами не очищаются: каждый тест заводит своих пользователей.
+ * <p>
+ * Контекст общий для всех наследников. ddl-auto=validate: любой тест заодно проверяет,
+ * что сущности согласованы с миграциями. Курсы — локальная заглушка без сети.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "app.currency.provider=stub",
+        // Фоновые проходы тесты вызывают сами
+        "app.analytics.backfill-interval=PT24H",
+        "app.purge.poll-interval=PT24H",
+        "app.metrics.scrape-token=" + PostgresIntegrationTest.SCRAPE_TOKEN
+})
+@AutoConfigureMockMvc
+// В тестах Spring Boot по умолчанию отключает выгрузку метрик, а с ней и /actuator/prometheus
+@AutoConfigureObservability(tracing = false)
+@ExtendWith(PostgresIntegrationTest.PostgresAvailable.class)
+public abstract class PostgresIntegrationTest {
+
+    protected static final String SCRAPE_TOKEN = "test-scrape-token";
+
+    private static final String EXTERNAL_URL = System.getenv("TEST_DATABASE_URL");
+
+    private static PostgreSQLContainer<?> container;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    static final class PostgresAvailable implements ExecutionCondition {
+
+        @Override
+        public ConditionEvaluationResult evaluateExecutionCondition(ExtensionContext context) {
+            if (EXTERNAL_URL != null) {
+                return ConditionEvaluationResult.enabled("TEST_DATABASE_URL is set");
+            }
+            return DockerClientFactory.instance().isDockerAvailable()
+                    ? ConditionEvaluationResult.enabled("Docker is available")
+                    : ConditionEvaluationResult.disabled("Neither TEST_DATABASE_URL nor Docker is available");
+        }
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        if (EXTERNAL_URL != null) {
+            registry.add("spring.datasource.url", () -> EXTERNAL_URL);
+            registry.add("spring.datasource.username", () -> env("TEST_DATABASE_USER", "postgres"));
+            registry.add("spring.datasource.password", () -> env("TEST_DATABASE_PASSWORD", ""));
+            return;
+        }
+        PostgreSQLContainer<?> postgres = container();
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    protected long createUser() {
+        return jdbcTemplate.queryForObject("insert into users (username, password) values (?, 'x') returning id",
+                Long.class, "user-" + UUID.randomUUID());
+    }
+
+    /** Операция в обход сервисов: ни итоги, ни баланс, ни версия данных не меняются. */
+    protected long insertTransaction(long userId, String type, String category, long amountMinor, LocalDate date) {
+        long id = jdbcTemplate.queryForObject("select nextval('transaction_seq')", Long.class);
+        jdbcTemplate.update("insert into transaction (id, amount_minor, category, currency, date, timestamp, type, " +
+                "user_id) values (?, ?, ?, 'BYN', ?, ?, ?, ?)", id, amountMinor, category, date,
+                date.atTime(12, 0), type, userId);
+        return id;
+    }
+
+    private static synchronized PostgreSQLContainer<?> container() {
+        if (container == null) {
+            container = new PostgreSQLContainer<>("postgres:15-alpine");
+            container.start();
+        }
+        return container;
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
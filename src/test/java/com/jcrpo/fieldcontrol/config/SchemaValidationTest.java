@@ -0,0 +1,25 @@
+package com.jcrpo.fieldcontrol.config;
+
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Миграции применяются на PostgreSQL, и сущности с ними согласованы: контекст с
+ * ddl-auto=validate (см. {@link PostgresIntegrationTest}) не поднимется, если колонка
+ * или таблица разошлась с маппингом.
+ */
+class SchemaValidationTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private Flyway flyway;
+
+    @Test
+    void allMigrationsAppliedAndEntitiesMatchSchema() {
+        assertThat(flyway.info().pending()).isEmpty();
+        assertThat(flyway.info().current().getVersion().getVersion()).isEqualTo("7");
+    }
+}
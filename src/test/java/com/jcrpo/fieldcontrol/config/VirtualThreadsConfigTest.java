@@ -0,0 +1,28 @@
+package com.jcrpo.fieldcontrol.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadsConfigTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withUserConfiguration(VirtualThreadsConfig.class);
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void refusesToStartWithVirtualThreadsBelowJava21() {
+        runner.withPropertyValues("spring.threads.virtual.enabled=true").run(context ->
+                assertThat(context).hasFailed().getFailure().hasRootCauseMessage(
+                        "spring.threads.virtual.enabled=true requires Java 21+, but the application runs on Java "
+                                + Runtime.version().feature()));
+    }
+
+    @Test
+    void platformThreadsStartOnAnyJava() {
+        runner.run(context -> assertThat(context).hasNotFailed());
+    }
+}
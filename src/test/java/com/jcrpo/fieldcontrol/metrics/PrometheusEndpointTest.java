@@ -0,0 +1,45 @@
+package com.jcrpo.fieldcontrol.metrics;
+
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import com.jcrpo.fieldcontrol.security.MetricsScrapeTokenFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** /actuator/prometheus отдаёт метрики только с токеном; health открыт для проб. */
+class PrometheusEndpointTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void scrapeRequiresToken() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").header(MetricsScrapeTokenFilter.HEADER, "wrong"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void scrapeWithTokenExposesPoolAndHibernateMetrics() throws Exception {
+        mockMvc.perform(get("/api/currency")).andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/prometheus").header(MetricsScrapeTokenFilter.HEADER, SCRAPE_TOKEN))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("hikaricp_connections_active")))
+                .andExpect(content().string(containsString("hibernate_statements_total")))
+                .andExpect(content().string(containsString("ledger_loads_total")))
+                .andExpect(content().string(containsString(
+                        "hibernate_statements_per_request_count{uri=\"/api/currency\"")));
+    }
+
+    @Test
+    void healthIsOpen() throws Exception {
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,42 @@
+package com.jcrpo.fieldcontrol.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricsScrapeTokenFilterTest {
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void emptyTokenNeverAuthenticates() throws Exception {
+        assertThat(authenticate("", "")).isNull();
+        assertThat(authenticate("", null)).isNull();
+    }
+
+    @Test
+    void matchingTokenGrantsScrapeAuthority() throws Exception {
+        assertThat(authenticate("secret", "secret").getAuthorities())
+                .extracting(Object::toString).containsExactly(MetricsScrapeTokenFilter.AUTHORITY);
+        SecurityContextHolder.clearContext();
+        assertThat(authenticate("secret", "secret2")).isNull();
+    }
+
+    private static Authentication authenticate(String configured, String presented) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/actuator/prometheus");
+        if (presented != null) {
+            request.addHeader(MetricsScrapeTokenFilter.HEADER, presented);
+        }
+        new MetricsScrapeTokenFilter(configured).doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
@@ -0,0 +1,65 @@
+package com.jcrpo.fieldcontrol.security;
+
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import com.jcrpo.fieldcontrol.model.User;
+import com.jcrpo.fieldcontrol.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Отзыв токенов хранится в users.credential_version и переживает перезапуск. */
+class TokenServiceTest extends PostgresIntegrationTest {
+
+    private static final String SECRET = "token-service-test-secret";
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void passwordChangeRevokesTokensAfterRestart() {
+        long userId = createUser();
+        String token = newInstance().issue(new AppUserPrincipal(userId, "user", null)).token();
+        assertThat(newInstance().verify(token)).map(AppUserPrincipal::getUserId).contains(userId);
+
+        jdbcTemplate.update("update users set credential_version = credential_version + 1 where id = ?", userId);
+
+        // Новый процесс с тем же секретом ничего не помнит об отзыве, кроме строки в users
+        TokenService restarted = newInstance();
+        assertThat(restarted.verify(token)).isEmpty();
+        assertThat(restarted.verify(restarted.issue(new AppUserPrincipal(userId, "user", null)).token()))
+                .isPresent();
+
+        jdbcTemplate.update("delete from users where id = ?", userId);
+        assertThat(newInstance().verify(token)).isEmpty();
+    }
+
+    @Test
+    void passwordChangeRevokesCachedVersionImmediately() {
+        long userId = createUser();
+        String token = tokenService.issue(new AppUserPrincipal(userId, "user", null)).token();
+        assertThat(tokenService.verify(token)).isPresent();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.findById(userId).orElseThrow();
+            user.setPassword("changed");
+            user.setCredentialVersion(user.getCredentialVersion() + 1);
+        });
+
+        assertThat(tokenService.verify(token)).isEmpty();
+    }
+
+    private TokenService newInstance() {
+        return new TokenService(jdbcTemplate, new SimpleMeterRegistry(), true, Duration.ofHours(1), SECRET, Duration.ofMinutes(5));
+    }
+}
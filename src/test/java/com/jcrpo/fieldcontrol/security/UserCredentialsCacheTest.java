@@ -0,0 +1,47 @@
+package com.jcrpo.fieldcontrol.security;
+
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import com.jcrpo.fieldcontrol.config.CacheConfig;
+import com.jcrpo.fieldcontrol.dto.UserCredentials;
+import com.jcrpo.fieldcontrol.model.User;
+import com.jcrpo.fieldcontrol.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Кэш входа хранит неизменяемую проекцию и сбрасывается при смене пароля. */
+class UserCredentialsCacheTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void cachesProjectionAndEvictsOnPasswordChange() {
+        long userId = createUser();
+        String username = jdbcTemplate.queryForObject("select username from users where id = ?", String.class, userId);
+
+        UserCredentials first = userRepository.findCredentialsByUsername(username).orElseThrow();
+        assertThat(first).isEqualTo(new UserCredentials(userId, username, "x"));
+        assertThat(cacheManager.getCache(CacheConfig.USERS).get(username).get()).isSameAs(first);
+        assertThat(userRepository.findCredentialsByUsername(username)).containsSame(first);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.findById(userId).orElseThrow();
+            user.setPassword("changed");
+            user.setCredentialVersion(user.getCredentialVersion() + 1);
+        });
+
+        assertThat(cacheManager.getCache(CacheConfig.USERS).get(username)).isNull();
+        assertThat(userRepository.findCredentialsByUsername(username).orElseThrow().passwordHash())
+                .isEqualTo("changed");
+    }
+}
@@ -0,0 +1,94 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import com.jcrpo.fieldcontrol.dto.BatchIngestResult;
+import com.jcrpo.fieldcontrol.model.Goal;
+import com.jcrpo.fieldcontrol.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Итоги складывают суммы без пересчёта, поэтому история пользователя ведётся в одной валюте. */
+class AccountCurrencyTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private DataService dataService;
+
+    @Autowired
+    private TransactionIngestService ingestService;
+
+    @Test
+    void rejectsTransactionsInAnotherCurrency() {
+        long userId = createUser();
+        dataService.saveGoal(goal("usd"), userId);
+
+        assertThat(dataService.saveTransaction(expense(500, null), userId).getCurrency()).isEqualTo("USD");
+        assertThat(dataService.saveTransaction(expense(300, "usd"), userId).getCurrency()).isEqualTo("USD");
+        assertThatThrownBy(() -> dataService.saveTransaction(expense(10_000, "BYN"), userId))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("USD");
+
+        assertThat(dataService.getSummary(userId, null).expense()).isEqualTo(800);
+    }
+
+    @Test
+    void keepsGoalCurrencyWhileHistoryExists() {
+        long userId = createUser();
+        dataService.saveGoal(goal("EUR"), userId);
+        // Без истории валюту учёта можно сменить
+        dataService.saveGoal(goal("USD"), userId);
+        dataService.saveTransaction(expense(500, null), userId);
+
+        assertThatThrownBy(() -> dataService.saveGoal(goal("EUR"), userId))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("USD");
+        assertThat(dataService.saveGoal(goal("USD"), userId).getCurrency()).isEqualTo("USD");
+    }
+
+    @Test
+    void rechecksCurrencyUnderBalanceLockWhenIngesting() throws Exception {
+        long userId = createUser();
+        dataService.saveGoal(goal("EUR"), userId);
+        // Цель меняется после того, как загрузка прочитала валюту, но до записи порции
+        boolean[] changed = {false};
+        TransactionSource source = () -> {
+            if (changed[0]) {
+                return null;
+            }
+            changed[0] = true;
+            dataService.saveGoal(goal("USD"), userId);
+            return expense(500, "EUR");
+        };
+
+        BatchIngestResult result = ingestService.ingest(userId, source, false);
+
+        assertThat(result.accepted()).isZero();
+        assertThat(result.rejected()).isEqualTo(1);
+        assertThat(result.errors()).singleElement().satisfies(error -> assertThat(error.message()).contains("USD"));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from transaction where user_id = ?",
+                Long.class, userId)).isZero();
+    }
+
+    private static Goal goal(String currency) {
+        Goal goal = new Goal();
+        goal.setName("Trip");
+        goal.setAmountMinor(100_000);
+        goal.setDate(LocalDate.now().plusMonths(6));
+        goal.setCurrency(currency);
+        return goal;
+    }
+
+    private static Transaction expense(long amountMinor, String currency) {
+        Transaction transaction = new Transaction();
+        transaction.setType("EXPENSE");
+        transaction.setCategory("food");
+        transaction.setAmountMinor(amountMinor);
+        transaction.setCurrency(currency);
+        transaction.setDate(LocalDate.now());
+        transaction.setTimestamp(LocalDateTime.now());
+        return transaction;
+    }
+}
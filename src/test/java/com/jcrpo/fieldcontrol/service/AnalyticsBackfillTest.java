@@ -0,0 +1,54 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import com.jcrpo.fieldcontrol.model.SpendingRollup;
+import com.jcrpo.fieldcontrol.repository.SpendingRollupRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Итоги по старой истории строит фоновая задача, и они совпадают с отчётом по истории до неё. */
+class AnalyticsBackfillTest extends PostgresIntegrationTest {
+
+    private static final LocalDate FROM = LocalDate.of(2020, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2030, 1, 1);
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private SpendingRollupRepository rollupRepository;
+
+    @Test
+    void backfillMatchesHistoryFallback() {
+        long userId = createUser();
+        LocalDate day = LocalDate.now().minusMonths(1);
+        insertTransaction(userId, "EXPENSE", "food", 1_050, day);
+        insertTransaction(userId, "EXPENSE", "food", 200, day);
+        insertTransaction(userId, "EXPENSE", null, 300, day);
+        insertTransaction(userId, "EXPENSE", "rent", 40_000, day.minusDays(3));
+        insertTransaction(userId, "INCOME", "salary", 90_000, day);
+        assertThat(balanceService.getBalance(userId).getRollupsReady()).isNotEqualTo(Boolean.TRUE);
+
+        List<String> fallback = rollupRepository.aggregateHistory(userId, "EXPENSE", FROM, TO).stream()
+                .map(row -> row[0] + "/" + row[1] + "/" + row[2] + "/" + row[3])
+                .toList();
+        assertThat(fallback).hasSize(3);
+
+        analyticsService.backfillRollups();
+
+        assertThat(balanceService.getBalance(userId).getRollupsReady()).isTrue();
+        List<SpendingRollup> built = rollupRepository.findByUserIdAndTypeAndDayBetweenOrderByDayAsc(
+                userId, "EXPENSE", FROM, TO);
+        assertThat(built).map(r -> r.getDay() + "/" + r.getCategory() + "/" + r.getTotal() + "/" + r.getTxCount())
+                .containsExactlyInAnyOrderElementsOf(fallback);
+        assertThat(fallback).contains(day + "/food/1250/2", day + "//300/1");
+    }
+}
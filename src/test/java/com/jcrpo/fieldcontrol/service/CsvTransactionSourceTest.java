@@ -0,0 +1,56 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Продолжение загрузки с любого места попадает на ту же строку, что и чтение подряд. */
+class CsvTransactionSourceTest {
+
+    private static final String CSV = "amount,type,category,description,date\r\n"
+            + "10.00,EXPENSE,food,\"multi\nline\",2024-01-02\r\n"
+            + "\r\n"
+            + "20.00,INCOME,salary,plain,2024-01-03\n"
+            + "\"30,50\",EXPENSE,\"a \"\"quoted\"\" cat\",\"x\n\ny\",04.01.2024\n"
+            + "\n"
+            + "\n"
+            + "40.00,EXPENSE,rent,,2024-01-05\n"
+            + "\n";
+
+    @Test
+    void skipCountsRowsTheWayNextDoes() throws IOException {
+        List<String> all = readAll(new CsvTransactionSource(new StringReader(CSV)));
+        assertThat(all).hasSize(4);
+        assertThat(all.get(0)).isEqualTo("1000|multi\nline|2024-01-02");
+        assertThat(all.get(2)).isEqualTo("3050|x\n\ny|2024-01-04");
+
+        for (int offset = 0; offset <= all.size(); offset++) {
+            CsvTransactionSource resumed = new CsvTransactionSource(new StringReader(CSV));
+            resumed.skip(offset);
+            assertThat(readAll(resumed)).as("resume after %d rows", offset)
+                    .isEqualTo(all.subList(offset, all.size()));
+        }
+    }
+
+    @Test
+    void skipPastEndFails() throws IOException {
+        CsvTransactionSource source = new CsvTransactionSource(new StringReader(CSV));
+        assertThatThrownBy(() -> source.skip(5)).isInstanceOf(IOException.class)
+                .hasMessageContaining("after 4 rows");
+    }
+
+    private static List<String> readAll(CsvTransactionSource source) throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (Transaction t = source.next(); t != null; t = source.next()) {
+            rows.add(t.getAmountMinor() + "|" + t.getDescription() + "|" + t.getDate());
+        }
+        return rows;
+    }
+}
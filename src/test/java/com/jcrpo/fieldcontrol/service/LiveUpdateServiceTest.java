@@ -0,0 +1,99 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jcrpo.fieldcontrol.dto.BalanceSummary;
+import com.jcrpo.fieldcontrol.dto.DataVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Итоги считаются вне потоков-отправителей и сливаются: поток изменений даёт один-два расчёта.
+ * Вытеснение старой вкладки не ждёт её зависшей записи.
+ */
+class LiveUpdateServiceTest {
+
+    private static final BalanceSummary SUMMARY = new BalanceSummary(null, 0, 0, 0, 0, 0, 0, null);
+
+    @Test
+    void coalescesSummariesPerUserOffTheSenderPool() throws Exception {
+        DataService dataService = mock(DataService.class);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        when(dataService.getDataVersion(anyLong())).thenReturn(new DataVersion(1, 0));
+        when(dataService.getSummary(anyLong(), any())).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            release.await(10, TimeUnit.SECONDS);
+            return SUMMARY;
+        });
+        LiveUpdateService live = new LiveUpdateService(new ObjectMapper(), dataService, new SimpleMeterRegistry(),
+                Duration.ofMinutes(1), 64, 5, 1, Duration.ofSeconds(10), 1);
+        try {
+            live.subscribe(1L);
+            live.onDataChanged(DataChangedEvent.bulk(1L, 2, 1));
+            verify(dataService, timeout(5_000)).getSummary(1L, null);
+
+            // Пока первый расчёт идёт, сотня изменений ждёт одного следующего
+            for (long version = 3; version < 103; version++) {
+                live.onDataChanged(DataChangedEvent.bulk(1L, version, 1));
+            }
+            release.countDown();
+            verify(dataService, timeout(5_000).times(2)).getSummary(1L, null);
+            Thread.sleep(200);
+            assertThat(threads).hasSize(2).allMatch(name -> name.startsWith("live-summary-"));
+        } finally {
+            live.shutdown();
+        }
+    }
+
+    @Test
+    void evictsOldestTabWithoutBlockingNewSubscriber() throws Exception {
+        DataService dataService = mock(DataService.class);
+        when(dataService.getDataVersion(anyLong())).thenReturn(new DataVersion(1, 0));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LiveUpdateService live = new LiveUpdateService(new ObjectMapper(), dataService, meterRegistry,
+                Duration.ofMinutes(1), 64, 1, 1, Duration.ofSeconds(10), 1);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            SseEmitter oldest = live.subscribe(1L);
+            // Монитор emitter занят, как при записи в зависшее соединение
+            Thread writer = new Thread(() -> {
+                synchronized (oldest) {
+                    held.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            writer.start();
+            assertThat(held.await(5, TimeUnit.SECONDS)).isTrue();
+
+            CompletableFuture<SseEmitter> newest = CompletableFuture.supplyAsync(() -> live.subscribe(1L));
+            assertThat(newest.get(2, TimeUnit.SECONDS)).isNotSameAs(oldest);
+            assertThat(meterRegistry.get("live.clients.evicted").counter().count()).isEqualTo(1);
+            release.countDown();
+            writer.join(5_000);
+        } finally {
+            release.countDown();
+            live.shutdown();
+        }
+    }
+}
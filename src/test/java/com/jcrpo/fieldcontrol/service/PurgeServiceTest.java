@@ -0,0 +1,80 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import com.jcrpo.fieldcontrol.model.PurgeJob;
+import com.jcrpo.fieldcontrol.repository.PurgeJobRepository;
+import com.jcrpo.fieldcontrol.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Граница удаления — версия данных: операция с меньшим id, зафиксированная после удаления
+ * истории, остаётся видимой и не удаляется фоновой задачей.
+ */
+class PurgeServiceTest extends PostgresIntegrationTest {
+
+    private static final LocalDate DAY = LocalDate.now().minusDays(1);
+
+    @Autowired
+    private PurgeService purgeService;
+
+    @Autowired
+    private PurgeJobRepository purgeJobRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void purgesByVersionNotById() {
+        long userId = createUser();
+        long first = insertTransaction(userId, "EXPENSE", "food", 100, DAY);
+        insertTransaction(userId, "EXPENSE", "food", 200, DAY);
+
+        PurgeJob job = purgeService.requestPurge(userId);
+        assertThat(transactionRepository.sumExpensesByUserIdAndDate(userId, DAY)).isZero();
+
+        // Блок id выдан раньше, а строка зафиксирована уже после удаления — с новой версией
+        long late = insertTransaction(userId, "EXPENSE", "food", 40, DAY);
+        jdbcTemplate.update("update transaction set id = ?, change_version = ? where id = ?",
+                first - 1, job.getResetVersion() + 1, late);
+        assertThat(transactionRepository.sumExpensesByUserIdAndDate(userId, DAY)).isEqualTo(40);
+
+        purgeService.processPending();
+
+        PurgeJob done = purgeJobRepository.findById(job.getId()).orElseThrow();
+        assertThat(done.getStatus()).isEqualTo(PurgeJob.Status.DONE);
+        assertThat(done.getDeletedRows()).isEqualTo(2);
+        List<Long> remaining = jdbcTemplate.queryForList("select id from transaction where user_id = ?",
+                Long.class, userId);
+        assertThat(remaining).containsExactly(first - 1);
+    }
+
+    @Test
+    void skipsJobLockedByAnotherInstance() {
+        long userId = createUser();
+        insertTransaction(userId, "EXPENSE", "food", 100, DAY);
+        PurgeJob job = purgeService.requestPurge(userId);
+
+        // Пока задача заблокирована чужой транзакцией, проход её не трогает
+        transactionTemplate.executeWithoutResult(status -> {
+            assertThat(purgeJobRepository.lockPending(job.getId())).isPresent();
+            CompletableFuture.runAsync(purgeService::processPending).join();
+            assertThat(jdbcTemplate.queryForObject("select count(*) from transaction where user_id = ?",
+                    Long.class, userId)).isEqualTo(1);
+        });
+
+        purgeService.processPending();
+        assertThat(purgeJobRepository.findById(job.getId()).orElseThrow().getStatus())
+                .isEqualTo(PurgeJob.Status.DONE);
+    }
+}
@@ -0,0 +1,69 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import com.jcrpo.fieldcontrol.dto.HistoryCursor;
+import com.jcrpo.fieldcontrol.dto.TransactionFilter;
+import com.jcrpo.fieldcontrol.dto.TransactionPage;
+import com.jcrpo.fieldcontrol.dto.TransactionView;
+import com.jcrpo.fieldcontrol.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Операции без времени получают начало дня и проходятся курсором наравне с остальными. */
+class TransactionHistoryCursorTest extends PostgresIntegrationTest {
+
+    private static final LocalDate DAY = LocalDate.now().minusDays(1);
+
+    @Autowired
+    private DataService dataService;
+
+    @Test
+    void pagesThroughTransactionsSavedWithoutTimestamp() {
+        long userId = createUser();
+        List<Long> saved = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            saved.add(dataService.saveTransaction(expense(), userId).getId());
+        }
+        saved.add(insertTransaction(userId, "EXPENSE", "food", 100, DAY));
+        saved.add(insertTransaction(userId, "EXPENSE", "food", 100, DAY.minusDays(1)));
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            TransactionPage page = dataService.getTransactionPage(userId, TransactionFilter.none(),
+                    cursor == null ? null : HistoryCursor.decode(cursor), 2);
+            page.items().stream().map(TransactionView::id).forEach(seen::add);
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(seen).containsExactlyInAnyOrderElementsOf(saved).doesNotHaveDuplicates();
+        assertThat(jdbcTemplate.queryForObject("select timestamp from transaction where id = ?",
+                LocalDateTime.class, saved.get(0))).isEqualTo(DAY.atStartOfDay());
+    }
+
+    @Test
+    void rejectsRowsWithoutTimestamp() {
+        long userId = createUser();
+        assertThatThrownBy(() -> jdbcTemplate.update("insert into transaction (id, amount_minor, currency, date, type, "
+                + "user_id) values (nextval('transaction_seq'), 1, 'BYN', ?, 'EXPENSE', ?)", DAY, userId))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private static Transaction expense() {
+        Transaction transaction = new Transaction();
+        transaction.setType("EXPENSE");
+        transaction.setCategory("food");
+        transaction.setAmountMinor(100);
+        transaction.setDate(DAY);
+        return transaction;
+    }
+}
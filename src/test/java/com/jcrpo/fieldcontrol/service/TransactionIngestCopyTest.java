@@ -0,0 +1,49 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import com.jcrpo.fieldcontrol.dto.BatchIngestResult;
+import com.jcrpo.fieldcontrol.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Порция загрузки пишется через COPY и берёт id из того же пула, что и Hibernate. */
+class TransactionIngestCopyTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private TransactionIngestService ingestService;
+
+    @Autowired
+    private DataService dataService;
+
+    @Test
+    void copiesChunkWithIdsFromHibernatePool() throws Exception {
+        long userId = createUser();
+        String csv = "amount,currency,type,category,description,date\n"
+                + "10,BYN,EXPENSE,food,\"two\nlines, \"\"quoted\"\"\",2024-01-02\n"
+                + "20,BYN,EXPENSE,food,,2024-01-03\n"
+                + "30,BYN,INCOME,salary,plain,2024-01-04\n";
+
+        BatchIngestResult result = ingestService.ingest(userId, new CsvTransactionSource(new StringReader(csv)), false);
+        assertThat(result.accepted()).isEqualTo(3);
+
+        Transaction saved = new Transaction();
+        saved.setType("EXPENSE");
+        saved.setCategory("food");
+        saved.setAmountMinor(500);
+        saved.setDate(LocalDate.now());
+        dataService.saveTransaction(saved, userId);
+
+        List<Long> ids = jdbcTemplate.queryForList("select id from transaction where user_id = ?", Long.class, userId);
+        assertThat(ids).hasSize(4).doesNotHaveDuplicates();
+        assertThat(jdbcTemplate.queryForList("select description from transaction where user_id = ? order by date",
+                String.class, userId)).containsExactly("two\nlines, \"quoted\"", null, "plain", null);
+        assertThat(jdbcTemplate.queryForObject("select sum(amount_minor) from transaction where user_id = ?"
+                + " and type = 'EXPENSE'", Long.class, userId)).isEqualTo(3500);
+    }
+}
@@ -0,0 +1,140 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import com.jcrpo.fieldcontrol.model.Transaction;
+import com.jcrpo.fieldcontrol.repository.GoalRepository;
+import com.jcrpo.fieldcontrol.repository.JournalCheckpointRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Журнал после остановки с неприменёнными записями: каждая принятая операция попадает в БД
+ * ровно один раз, а второй процесс с тем же node-id не запускается. Пакеты журнала
+ * дописываются в реестр счёта без его перестроения.
+ */
+class TransactionJournalReplayTest extends PostgresIntegrationTest {
+
+    private static final Duration NEVER = Duration.ofHours(1);
+
+    @TempDir
+    Path dir;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private GoalRepository goalRepository;
+
+    @Autowired
+    private JournalCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void replaysUnappliedEntriesExactlyOnce() throws Exception {
+        String nodeId = "node-" + UUID.randomUUID();
+        long userId = createUser();
+        List<Long> accepted = new ArrayList<>();
+
+        // Пакет из трёх записей применяется сразу, следующие две остаются только в файле
+        TransactionJournal first = journal(nodeId, 3, NEVER);
+        first.start();
+        try {
+            for (int i = 0; i < 3; i++) {
+                accepted.add(first.append(userId, expense(100)).getId());
+            }
+            assertThat(first.awaitApplied(userId, Duration.ofSeconds(10))).isTrue();
+            accepted.add(first.append(userId, expense(20)).getId());
+            accepted.add(first.append(userId, expense(20)).getId());
+            assertThat(first.pending(userId)).hasSize(2);
+
+            TransactionJournal duplicate = journal(nodeId, 3, NEVER);
+            assertThatThrownBy(duplicate::start).isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("already open");
+        } finally {
+            first.stop();
+        }
+        assertThat(storedIds(userId)).hasSize(3);
+        assertThat(ledgerService.find(userId)).isPresent();
+        double loads = meterRegistry.counter("ledger.loads").count();
+
+        TransactionJournal second = journal(nodeId, 3, Duration.ofMillis(50));
+        second.start();
+        try {
+            assertThat(second.pending(userId)).hasSize(2);
+            assertThat(second.awaitApplied(userId, Duration.ofSeconds(10))).isTrue();
+        } finally {
+            second.stop();
+        }
+        assertThat(ledgerService.find(userId).orElseThrow().totals(LocalDate.now()).expense()).isEqualTo(340);
+        assertThat(meterRegistry.counter("ledger.loads").count()).isEqualTo(loads);
+
+        assertThat(storedIds(userId)).containsExactlyInAnyOrderElementsOf(accepted);
+        assertThat(balanceService.getBalance(userId).getTransactionCount()).isEqualTo(5);
+        assertThat(balanceService.getBalance(userId).getExpense()).isEqualTo(340);
+    }
+
+    @Test
+    void refusesToStartWithoutNodeId() {
+        TransactionJournal journal = journal(" ", 3, NEVER);
+        assertThatThrownBy(journal::start).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("app.journal.node-id");
+    }
+
+    private TransactionJournal journal(String nodeId, int batchSize, Duration flushInterval) {
+        return new TransactionJournal(objectMapper, dataSource, jdbcTemplate, transactionTemplate, balanceService,
+                analyticsService, goalRepository, checkpointRepository, eventPublisher, new SimpleMeterRegistry(),
+                true, dir, nodeId, DataSize.ofMegabytes(1), 1000, batchSize, flushInterval, Duration.ofSeconds(2));
+    }
+
+    private List<Long> storedIds(long userId) {
+        return jdbcTemplate.queryForList("select id from transaction where user_id = ?", Long.class, userId);
+    }
+
+    private static Transaction expense(long amountMinor) {
+        Transaction transaction = new Transaction();
+        transaction.setType("EXPENSE");
+        transaction.setCategory("food");
+        transaction.setAmountMinor(amountMinor);
+        transaction.setCurrency("BYN");
+        transaction.setDate(LocalDate.now());
+        return transaction;
+    }
+}
@@ -0,0 +1,89 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import com.jcrpo.fieldcontrol.dto.TransactionFilter;
+import com.jcrpo.fieldcontrol.model.Transaction;
+import com.jcrpo.fieldcontrol.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Число SQL-запросов на чтение истории (Hibernate Statistics). До перехода на проекции запрос
+ * читал сущности Transaction, к каждой подтягивался User (EAGER), а пользователь запроса
+ * загружался целиком по имени. Проекция — один select по user_id, сколько бы ни было строк.
+ */
+class TransactionReadQueryCountTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DataService dataService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void enableStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void disableStatistics() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    void historyReadIsOneStatementRegardlessOfRows() {
+        long userId = createUser();
+        String username = jdbcTemplate.queryForObject("select username from users where id = ?", String.class, userId);
+        for (int i = 0; i < 10; i++) {
+            insertTransaction(userId, "EXPENSE", "food", 100, LocalDate.now());
+        }
+
+        long entityPath = statements(() -> transactionTemplate.executeWithoutResult(status -> {
+            userRepository.findByUsername(username).orElseThrow();
+            entityManager.clear();
+            List<Transaction> rows = entityManager.createQuery(
+                            "select t from Transaction t where t.user.id = :userId", Transaction.class)
+                    .setParameter("userId", userId)
+                    .getResultList();
+            rows.forEach(t -> t.getUser().getUsername());
+        }));
+        long projectionPath = statements(() ->
+                dataService.getTransactionPage(userId, TransactionFilter.none(), null, 5));
+        long projectionAllRows = statements(() ->
+                dataService.getTransactionPage(userId, TransactionFilter.none(), null, 50));
+
+        assertThat(entityPath).isEqualTo(3);
+        assertThat(projectionPath).isEqualTo(1);
+        assertThat(projectionAllRows).isEqualTo(1);
+    }
+
+    private long statements(Runnable read) {
+        statistics.clear();
+        read.run();
+        return statistics.getPrepareStatementCount();
+    }
+}
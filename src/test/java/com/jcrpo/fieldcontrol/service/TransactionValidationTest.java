@@ -0,0 +1,65 @@
+package com.jcrpo.fieldcontrol.service;
+
+import com.jcrpo.fieldcontrol.PostgresIntegrationTest;
+import com.jcrpo.fieldcontrol.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Одиночная операция проходит те же проверки, что и пакетная загрузка. */
+class TransactionValidationTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private DataService dataService;
+
+    @Test
+    void rejectsInvalidTypeAndAmount() {
+        long userId = createUser();
+
+        assertThatThrownBy(() -> dataService.saveTransaction(transaction("REFUND", 100), userId))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("type");
+        assertThatThrownBy(() -> dataService.saveTransaction(transaction(null, 100), userId))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("type");
+        assertThatThrownBy(() -> dataService.saveTransaction(transaction("EXPENSE", -100), userId))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("amount");
+        Transaction longCategory = transaction("EXPENSE", 100);
+        longCategory.setCategory("x".repeat(256));
+        assertThatThrownBy(() -> dataService.saveTransaction(longCategory, userId))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("category");
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from transaction where user_id = ?",
+                Long.class, userId)).isZero();
+    }
+
+    @Test
+    void ignoresClientIdInsteadOfOverwritingForeignRow() {
+        long owner = createUser();
+        long other = createUser();
+        long foreignId = insertTransaction(owner, "EXPENSE", "food", 100, LocalDate.now());
+
+        Transaction forged = transaction("income", 999_00);
+        forged.setId(foreignId);
+        long savedId = dataService.saveTransaction(forged, other).getId();
+
+        assertThat(savedId).isNotEqualTo(foreignId);
+        assertThat(jdbcTemplate.queryForObject("select user_id from transaction where id = ?",
+                Long.class, foreignId)).isEqualTo(owner);
+        assertThat(jdbcTemplate.queryForObject("select amount_minor from transaction where id = ?",
+                Long.class, foreignId)).isEqualTo(100);
+        assertThat(jdbcTemplate.queryForObject("select type from transaction where id = ?",
+                String.class, savedId)).isEqualTo("INCOME");
+    }
+
+    private static Transaction transaction(String type, long amountMinor) {
+        Transaction transaction = new Transaction();
+        transaction.setType(type);
+        transaction.setCategory("food");
+        transaction.setAmountMinor(amountMinor);
+        transaction.setDate(LocalDate.now());
+        return transaction;
+    }
+}
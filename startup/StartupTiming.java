@@ -0,0 +1,131 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+/**
+ * Время от запуска процесса приложения до первого успешного GET /api/data.
+ * Запускает команду после "--", регистрирует пользователя (как только сервер ответит),
+ * опрашивает /api/data с Basic-авторизацией до 200 и останавливает процесс (SIGTERM —
+ * при -XX:ArchiveClassesAtExit JVM успевает записать архив CDS).
+ *
+ * java startup/StartupTiming.java [--runs N] [--report file] http://localhost:8080 user:password -- java -jar app.jar
+ */
+public class StartupTiming {
+
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+    private static final long POLL_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int runs = 1;
+        Path report = null;
+        List<String> positional = new ArrayList<>();
+        List<String> command = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--report" -> report = Path.of(args[++i]);
+                case "--" -> {
+                    command = Arrays.asList(args).subList(i + 1, args.length);
+                    i = args.length;
+                }
+                default -> positional.add(args[i]);
+            }
+        }
+        if (positional.size() != 2 || command == null || command.isEmpty()) {
+            System.err.println("usage: StartupTiming [--runs N] [--report file] <baseUrl> <user:password> -- <command>...");
+            System.exit(2);
+        }
+        String baseUrl = positional.get(0);
+        String[] credentials = positional.get(1).split(":", 2);
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        List<long[]> results = new ArrayList<>();
+        for (int run = 1; run <= runs; run++) {
+            long[] result = measure(client, baseUrl, credentials, command, run);
+            results.add(result);
+            System.out.printf("run %d: first response %d ms, first /api/data %d ms%n", run, result[0], result[1]);
+        }
+
+        long[] firstResponse = results.stream().mapToLong(r -> r[0]).sorted().toArray();
+        long[] firstData = results.stream().mapToLong(r -> r[1]).sorted().toArray();
+        String summary = String.format("command: %s%nruns: %d%nfirst response median: %d ms%n"
+                        + "first /api/data median: %d ms (min %d, max %d)%n",
+                String.join(" ", command), runs, firstResponse[runs / 2],
+                firstData[runs / 2], firstData[0], firstData[runs - 1]);
+        System.out.print(summary);
+        if (report != null) {
+            Files.writeString(report, summary);
+        }
+    }
+
+    /** @return {мс до первого ответа сервера, мс до первого 200 на /api/data} */
+    private static long[] measure(HttpClient client, String baseUrl, String[] credentials,
+                                  List<String> command, int run) throws Exception {
+        File log = File.createTempFile("startup-run-" + run + "-", ".log");
+        long started = System.nanoTime();
+        Process app = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        try {
+            long deadline = started + START_TIMEOUT.toNanos();
+            String body = "{\"username\":\"" + credentials[0] + "\",\"password\":\"" + credentials[1] + "\"}";
+            HttpRequest register = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/register"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            // 200 — пользователь создан, 400 — уже есть; любой ответ значит, что сервер слушает
+            poll(client, register, deadline, app, log, status -> status < 500);
+            long firstResponse = System.nanoTime() - started;
+
+            String auth = "Basic " + Base64.getEncoder().encodeToString(
+                    (credentials[0] + ":" + credentials[1]).getBytes(StandardCharsets.UTF_8));
+            HttpRequest data = HttpRequest.newBuilder(URI.create(baseUrl + "/api/data"))
+                    .header("Authorization", auth)
+                    .GET()
+                    .build();
+            poll(client, data, deadline, app, log, status -> status == 200);
+            long firstData = System.nanoTime() - started;
+            return new long[]{TimeUnit.NANOSECONDS.toMillis(firstResponse), TimeUnit.NANOSECONDS.toMillis(firstData)};
+        } finally {
+            app.destroy();
+            if (!app.waitFor(60, TimeUnit.SECONDS)) {
+                app.destroyForcibly();
+            }
+        }
+    }
+
+    private static void poll(HttpClient client, HttpRequest request, long deadline, Process app, File log,
+                             IntPredicate done) throws Exception {
+        while (true) {
+            if (!app.isAlive()) {
+                throw new IllegalStateException("Application exited with " + app.exitValue() + ", see " + log);
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("No successful " + request.uri() + " within " + START_TIMEOUT + ", see " + log);
+            }
+            try {
+                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (done.test(status)) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Порт ещё не открыт
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+#!/usr/bin/env bash
+# Архив CDS (class data sharing) для быстрого старта. Исполняемый jar распаковывается,
+# приложение запускается с обычным classpath (CDS не видит классы из вложенных jar),
+# проходит тренировочный прогон до первого /api/data и при остановке пишет архив.
+#
+#   startup/train-cds.sh [exec-jar] [каталог]   # по умолчанию target/*-exec.jar и target/cds
+#   java -XX:SharedArchiveFile=target/cds/app.jsa @target/cds/launch.args
+#
+# Архив годится только для той же JVM и того же classpath: пересобирайте его вместе с jar.
+# Нужна доступная БД (как при обычном запуске) и свободный порт 8080 (или SERVER_PORT).
+set -euo pipefail
+
+jar=${1:-$(ls target/*-exec.jar | head -n 1)}
+out=${2:-target/cds}
+port=${SERVER_PORT:-8080}
+credentials=${STARTUP_CREDENTIALS:-startup:startup-check}
+
+jar=$(cd "$(dirname "$jar")" && pwd)/$(basename "$jar")
+rm -rf "$out"
+mkdir -p "$out/app"
+(cd "$out/app" && jar -xf "$jar")
+app=$(cd "$out/app" && pwd)
+
+classpath="$app/BOOT-INF/classes"
+for lib in "$app"/BOOT-INF/lib/*.jar; do
+    classpath="$classpath:$lib"
+done
+
+# Сборка с -Paot: сгенерированная инициализация контекста вместо разбора конфигурации
+aot=
+if [ -f "$app/BOOT-INF/classes/com/jcrpo/fieldcontrol/FieldControlApplication__ApplicationContextInitializer.class" ]; then
+    aot=-Dspring.aot.enabled=true
+fi
+
+{
+    echo "-cp $classpath"
+    if [ -n "$aot" ]; then echo "$aot"; fi
+    echo "com.jcrpo.fieldcontrol.FieldControlApplication"
+} > "$out/launch.args"
+
+java startup/StartupTiming.java "http://localhost:$port" "$credentials" -- \
+    java -XX:ArchiveClassesAtExit="$out/app.jsa" @"$out/launch.args" --server.port="$port"
+
+echo "CDS archive: $out/app.jsa"
+echo "Run: java -XX:SharedArchiveFile=$out/app.jsa @$out/launch.args"